@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+/**
+ * A strategy deciding when a server instance's circuit breaker should trip, based on the outcomes of the
+ * requests/messages sent to it. Each {@link ServerStats} has its own {@link CircuitBreakerPolicy} instance,
+ * so implementations may keep per server instance state, but must be thread-safe.
+ *
+ * @see ErrorRateCircuitBreakerPolicy
+ * @see SuccessRatioCircuitBreakerPolicy
+ */
+public interface CircuitBreakerPolicy {
+
+    /**
+     * record a successful request/message to the server instance
+     *
+     * @param nanoTime the time of the success, from the server instance's {@link JanusClock}
+     */
+    void recordSuccess(long nanoTime);
+
+    /**
+     * record a failed request/message to the server instance
+     *
+     * @param nanoTime the time of the error, from the server instance's {@link JanusClock}
+     * @return true if the server instance's circuit breaker should trip, false otherwise
+     */
+    boolean recordError(long nanoTime);
+
+    /**
+     * called when the server instance's circuit breaker trips, to allow the policy to start afresh
+     */
+    void reset();
+}
@@ -0,0 +1,52 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * The default {@link CircuitBreakerPolicy}, which trips the circuit breaker when the number of errors within the
+ * last second reaches a threshold. The threshold defaults to 10 errors and can be configured by setting/updating
+ * the property "janus.errorThresholdPerSec".
+ */
+public class ErrorRateCircuitBreakerPolicy implements CircuitBreakerPolicy {
+    public static final String ERROR_THRESHOLD_PER_SEC = "janus.errorThresholdPerSec";
+
+    private static final DynamicLongProperty errorThreshold = DynamicPropertyFactory.getInstance().getLongProperty(ERROR_THRESHOLD_PER_SEC, 10);
+
+    private final RollingCounter errorsPerSecond = new RollingCounter(1, TimeUnit.SECONDS, 10);
+
+    @Override
+    public void recordSuccess(long nanoTime) {
+    }
+
+    @Override
+    public boolean recordError(long nanoTime) {
+        return errorsPerSecond.incrementAndSum(nanoTime) >= errorThreshold.get();
+    }
+
+    @Override
+    public void reset() {
+        errorsPerSecond.reset();
+    }
+}
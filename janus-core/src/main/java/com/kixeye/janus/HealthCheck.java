@@ -0,0 +1,35 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+/**
+ * Actively checks whether a server instance is healthy, e.g. by making a request to a health check endpoint.
+ * Run by a {@link HealthChecker}, which never checks the same server instance concurrently.
+ */
+public interface HealthCheck {
+
+    /**
+     * check the given server instance. may block, but should give up after a reasonable timeout.
+     * @param instance the server instance to check
+     * @return true if the server instance is healthy, false otherwise
+     * @throws Exception if the check failed, which counts as unhealthy
+     */
+    boolean isHealthy(ServerInstance instance) throws Exception;
+}
@@ -0,0 +1,244 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Runs a {@link HealthCheck} against server instances on a small bounded pool of daemon threads, and marks
+ * them healthy or unhealthy (see {@link ServerInstance#setHealthy(boolean)}) so that unhealthy server instances
+ * get no traffic.
+ * <p/>
+ * {@link Janus} checks newly discovered server instances as soon as it next looks for available servers, and polls the
+ * checker on its {@link RefreshScheduler} to check the others as they fall due; with a {@link Subsetter} it only checks
+ * the server instances its subset may draw on. Each server instance is due again one interval after its last check,
+ * jittered per server instance (see {@link RefreshScheduler#REFRESH_JITTER}) so that the checks of a cluster spread out rather
+ * than all running at once. Newly discovered server instances get no traffic until they pass their first check.
+ * A server instance is only ever checked by one thread at a time, even if it is removed and added again while a check
+ * is running, so a check never opens more than one connection to it; a check which is still running when the next
+ * one is due is not repeated.
+ * <p/>
+ * The behaviour can be configured by setting/updating the properties
+ * <ul>
+ *     <li>"janus.healthCheck.intervalInMillis" - time between checks of a server instance (defaults to 10000)</li>
+ *     <li>"janus.healthCheck.unhealthyThreshold" - consecutive failed checks to mark a server instance unhealthy (defaults to 2)</li>
+ *     <li>"janus.healthCheck.healthyThreshold" - consecutive passed checks to mark a server instance healthy again (defaults to 1)</li>
+ * </ul>
+ * The number of threads, and so of concurrent checks, is set by the property "janus.healthCheck.threads" (defaults to 4).
+ * A single instance can be shared by several {@link Janus} instances.
+ */
+public class HealthChecker implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HealthChecker.class);
+
+    public static final String THREADS = "janus.healthCheck.threads";
+    public static final int DEFAULT_THREADS = 4;
+    public static final String INTERVAL_IN_MILLIS = "janus.healthCheck.intervalInMillis";
+    public static final long DEFAULT_INTERVAL_IN_MILLIS = 10000;
+    // how often due checks are looked for, at most
+    private static final long MAX_POLL_INTERVAL_IN_MILLIS = 1000;
+    public static final String UNHEALTHY_THRESHOLD = "janus.healthCheck.unhealthyThreshold";
+    public static final String HEALTHY_THRESHOLD = "janus.healthCheck.healthyThreshold";
+
+    private static final DynamicLongProperty interval = DynamicPropertyFactory.getInstance().getLongProperty(INTERVAL_IN_MILLIS, DEFAULT_INTERVAL_IN_MILLIS);
+    private static final DynamicIntProperty unhealthyThreshold = DynamicPropertyFactory.getInstance().getIntProperty(UNHEALTHY_THRESHOLD, 2);
+    private static final DynamicIntProperty healthyThreshold = DynamicPropertyFactory.getInstance().getIntProperty(HEALTHY_THRESHOLD, 1);
+
+    private final HealthCheck healthCheck;
+    private final ExecutorService executor;
+    private final ConcurrentMap<ServerInstance, CheckState> states = new ConcurrentHashMap<>();
+    // outlives the states, so that a server instance removed and added again is not checked twice at once
+    private final Set<ServerInstance> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<ServerInstance, Boolean>());
+
+    /**
+     * @param healthCheck the {@link HealthCheck} to run
+     */
+    public HealthChecker(HealthCheck healthCheck) {
+        this(healthCheck, DynamicPropertyFactory.getInstance().getIntProperty(THREADS, DEFAULT_THREADS).get());
+    }
+
+    /**
+     * @param healthCheck the {@link HealthCheck} to run
+     * @param threads the maximum number of checks to run concurrently
+     */
+    public HealthChecker(HealthCheck healthCheck, int threads) {
+        Preconditions.checkNotNull(healthCheck, "'healthCheck' cannot be null.");
+        Preconditions.checkArgument(threads > 0, "'threads' must be > 0");
+        this.healthCheck = healthCheck;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("janus-health-check-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * get the time between checks of a server instance
+     * @return the interval (in millis)
+     */
+    public long getInterval() {
+        return interval.get();
+    }
+
+    /**
+     * get the time between looking for server instances which are due to be checked
+     * @return the poll interval (in millis)
+     */
+    public long getPollInterval() {
+        return Math.max(1, Math.min(interval.get(), MAX_POLL_INTERVAL_IN_MILLIS));
+    }
+
+    /**
+     * check those of the given server instances which are due in the background, skipping any which are still being checked
+     * @param servers the server instances to check
+     */
+    public void check(Collection<ServerStats> servers) {
+        for (ServerStats stat : servers) {
+            ServerInstance instance = stat.getServerInstance();
+            CheckState state = states.get(instance);
+            if (state == null || instance.getClock().millis() - state.nextCheck >= 0) {
+                check(instance);
+            }
+        }
+    }
+
+    /**
+     * check the given server instance in the background now, unless it is still being checked
+     * @param instance the server instance to check
+     */
+    public void check(ServerInstance instance) {
+        CheckState state = states.get(instance);
+        if (state == null) {
+            CheckState newState = new CheckState();
+            state = states.putIfAbsent(instance, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        if (!inFlight.add(instance)) {
+            return;
+        }
+        state.nextCheck = instance.getClock().millis() + RefreshScheduler.jitter(interval.get());
+        try {
+            executor.execute(new CheckTask(instance, state));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(instance);
+            logger.debug("HealthChecker is closed, not checking <{}>", instance.getId());
+        }
+    }
+
+    /**
+     * is the given server instance awaiting its first check?
+     * @param instance the server instance
+     * @return true if no check of the server instance has finished since it was first checked or last removed
+     */
+    boolean isPending(ServerInstance instance) {
+        CheckState state = states.get(instance);
+        return state == null || !state.checked;
+    }
+
+    /**
+     * stop tracking the given server instance
+     * @param instance the server instance which is no longer checked
+     */
+    public void remove(ServerInstance instance) {
+        states.remove(instance);
+    }
+
+    /**
+     * Stops running checks.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The consecutive outcomes of checking a server instance.
+     */
+    private static class CheckState {
+        private volatile long nextCheck;
+        private volatile boolean checked;
+
+        // only updated by the thread holding the server instance's place in inFlight
+        private int consecutiveFailures;
+        private int consecutiveSuccesses;
+    }
+
+    private class CheckTask implements Runnable {
+        private final ServerInstance instance;
+        private final CheckState state;
+
+        private CheckTask(ServerInstance instance, CheckState state) {
+            this.instance = instance;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean passed;
+                try {
+                    passed = healthCheck.isHealthy(instance);
+                } catch (Exception e) {
+                    logger.debug("Health check of <{}> failed", instance.getId(), e);
+                    passed = false;
+                }
+
+                if (passed) {
+                    state.consecutiveFailures = 0;
+                    state.consecutiveSuccesses++;
+                    if (!instance.isHealthy() && state.consecutiveSuccesses >= healthyThreshold.get()) {
+                        logger.info("Server instance <{},{}> passed its health checks", instance.getId(), instance.getHost());
+                        instance.setHealthy(true);
+                    }
+                } else {
+                    state.consecutiveSuccesses = 0;
+                    state.consecutiveFailures++;
+                    if (instance.isHealthy() && state.consecutiveFailures >= unhealthyThreshold.get()) {
+                        logger.warn("Server instance <{},{}> failed its health checks", instance.getId(), instance.getHost());
+                        instance.setHealthy(false);
+                    }
+                }
+            } finally {
+                state.checked = true;
+                inFlight.remove(instance);
+            }
+        }
+    }
+}
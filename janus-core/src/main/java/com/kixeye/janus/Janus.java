@@ -19,12 +19,16 @@
  */
 package com.kixeye.janus;
 
+import java.io.Closeable;
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.kixeye.janus.loadbalancer.*;
@@ -33,12 +37,20 @@ import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.kixeye.janus.serverlist.ConfigServerList;
 import com.kixeye.janus.serverlist.ConstServerList;
 import com.kixeye.janus.serverlist.EurekaServerList;
+import com.kixeye.janus.serverlist.ObservableServerList;
+import com.kixeye.janus.serverlist.SeededServerList;
 import com.kixeye.janus.serverlist.ServerList;
+import com.kixeye.janus.serverlist.ServerListDelta;
+import com.kixeye.janus.serverlist.ServerListListener;
+import com.kixeye.janus.serverlist.SnapshotServerList;
 import com.netflix.config.ConfigurationManager;
+import com.netflix.config.DynamicDoubleProperty;
 import com.netflix.config.DynamicLongProperty;
 import com.netflix.config.DynamicPropertyFactory;
 
@@ -51,6 +63,26 @@ import com.netflix.config.DynamicPropertyFactory;
  * the {@link ServerList} for server instances when the period has expired.  By default, the service instances will be cached for 30 seconds,
  * and this can be overridden by calling setRefreshIntervalInMillis OR by setting/updating the property "janus.refreshIntervalInMillis".
  * <p/>
+ * If the {@link ServerList} is an {@link ObservableServerList}, changes it pushes are applied to the cache as they happen, and
+ * periodic refreshes only perform bookkeeping on the cached server instances rather than polling the whole list.
+ * <p/>
+ * By default the cache is refreshed inline by whichever caller of getServer() finds it out of date.  Alternatively, a {@link RefreshScheduler}
+ * can be provided, in which case the cache is refreshed in the background and getServer() only ever reads the last refreshed servers.
+ * <p/>
+ * If a {@link SnapshotServerList} is provided, the cache is saved to it in the background whenever it changes so that a restarted
+ * instance can serve the last known good server instances until discovery catches up.
+ * <p/>
+ * If an {@link OutlierDetector} is provided, server instances whose error rate or latency stands out from the rest of the
+ * cluster are periodically short circuited, in the same way as server instances which return too many errors.
+ * <p/>
+ * If a {@link HealthChecker} is provided, server instances are actively checked in the background and only get traffic
+ * while they pass their health checks.
+ * <p/>
+ * If the fraction of server instances which are up and not short circuited drops below a panic threshold (set by setting/updating
+ * the property "janus.panicThreshold", e.g. to 0.5, defaults to 0 which disables it), {@link Janus} enters panic mode and
+ * ignores circuit breakers, spreading requests over all server instances which are up rather than overloading the few
+ * remaining ones.
+ * <p/>
  * {@link Janus} delegates the responsibility of service instance discovery to the {@link ServerList} provided to it, allowing for configurable
  * discovery strategies.  Janus provides some strategies out of the box:
  *
@@ -73,22 +105,54 @@ import com.netflix.config.DynamicPropertyFactory;
  * @see {@link com.kixeye.janus.client.websocket.StatelessWebSocketClient}
  * @see {@link com.kixeye.janus.client.websocket.StatelessMessageClient}
  */
-public class Janus {
+public class Janus implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(Janus.class);
     public static final String REFRESH_INTERVAL_IN_MILLIS = "janus.refreshIntervalInMillis";
     public static final long DEFAULT_REFRESH_INTERVAL_IN_MILLIS = 30000;
+    public static final String PANIC_THRESHOLD = "janus.panicThreshold";
+    public static final double DEFAULT_PANIC_THRESHOLD = 0.0;
+
+    private static final DynamicDoubleProperty panicThreshold = DynamicPropertyFactory.getInstance().getDoubleProperty(PANIC_THRESHOLD, DEFAULT_PANIC_THRESHOLD);
 
     private final String serviceName;
     private final ServerList serverList;
     private final LoadBalancer loadBalancer;
     private final StatsFactory statsFactory;
+    private final RefreshScheduler refreshScheduler;
+    private final SnapshotServerList snapshot;
+    private final OutlierDetector outlierDetector;
+    private final HealthChecker healthChecker;
+    private final JanusClock clock;
+    private final Subsetter subsetter;
     private final DynamicLongProperty refreshInterval = DynamicPropertyFactory.getInstance().getLongProperty(REFRESH_INTERVAL_IN_MILLIS, DEFAULT_REFRESH_INTERVAL_IN_MILLIS);
 
     // cache of server lists
     private final Map<String, ServerStats> servers = new ConcurrentHashMap<>();
+    // the servers this client uses, updated along with the snapshot of the available servers
+    private volatile Collection<ServerStats> subset = servers.values();
     private final AtomicBoolean updatingServer = new AtomicBoolean(false);
+    private final AtomicBoolean snapshotPending = new AtomicBoolean(false);
     private long nextUpdateTime = -1;
+    private volatile boolean closed = false;
+
+    // snapshot of the available servers, rebuilt only when server availability changes
+    private volatile AvailableServers availableServers = AvailableServers.EMPTY;
+    private final AtomicBoolean availableServersStale = new AtomicBoolean(true);
+    private final ServerInstanceListener availabilityListener = new ServerInstanceListener() {
+        @Override
+        public void onAvailabilityChange(boolean isAvailable) {
+            availableServersStale.set(true);
+        }
+    };
+
+    // applies changes pushed by an observable server list
+    private final ServerListListener serverListListener = new ServerListListener() {
+        @Override
+        public void onServerListChanged(ServerListDelta delta) {
+            applyServerListDelta(delta);
+        }
+    };
 
     /**
      * @param serviceName  the name of the service cluster
@@ -101,6 +165,15 @@ public class Janus {
         this.serverList = serverList;
         this.loadBalancer = loadBalancer;
         this.statsFactory = statsFactory;
+        this.refreshScheduler = null;
+        this.snapshot = null;
+        this.outlierDetector = null;
+        this.healthChecker = null;
+        this.clock = JanusClock.system();
+        this.subsetter = null;
+        if (serverList instanceof ObservableServerList) {
+            ((ObservableServerList) serverList).addServerListListener(serverListListener);
+        }
         initializeServerList();
     }
 
@@ -112,12 +185,55 @@ public class Janus {
      * @param refreshInterval the refresh interval (in millis) to refresh Janus's cache of servers.
      */
     public Janus(String serviceName, ServerList serverList, LoadBalancer loadBalancer, StatsFactory statsFactory, long refreshInterval) {
+        this(serviceName, serverList, loadBalancer, statsFactory, refreshInterval, null, null, null, null, JanusClock.system(), null);
+    }
+
+    /**
+     * Used by the {@link Builder}, which is the only way to set the options beyond those of the public constructors.
+     *
+     * @param serviceName  the name of the service cluster
+     * @param serverList   the {@link ServerList} implementation
+     * @param loadBalancer the {@link LoadBalancer} implementation
+     * @param statsFactory factory class for the creation of {@link ServerStats}
+     * @param refreshInterval the refresh interval (in millis) to refresh Janus's cache of servers.
+     * @param refreshScheduler the {@link RefreshScheduler} used to refresh Janus's cache of servers in the background,
+     *                         or null to refresh inline from getServer().
+     * @param snapshot the {@link SnapshotServerList} to save Janus's cache of servers to when it changes, or null
+     *                 to not save snapshots.
+     * @param outlierDetector the {@link OutlierDetector} used to eject outlying servers, or null to not detect outliers.
+     *                        Runs in the background if a {@link RefreshScheduler} is given, otherwise inline from getServer().
+     * @param healthChecker the {@link HealthChecker} used to actively check servers, or null to not check them. Checks are
+     *                      scheduled on the given {@link RefreshScheduler}, or the shared one if none is given.
+     * @param clock the {@link JanusClock} used by Janus and its servers.
+     * @param subsetter the {@link Subsetter} limiting this client to a subset of the servers, or null to use all servers.
+     */
+    private Janus(String serviceName, ServerList serverList, LoadBalancer loadBalancer, StatsFactory statsFactory, long refreshInterval, RefreshScheduler refreshScheduler, SnapshotServerList snapshot, OutlierDetector outlierDetector, HealthChecker healthChecker, JanusClock clock, Subsetter subsetter) {
+        Preconditions.checkNotNull(clock, "'clock' cannot be null.");
         this.serviceName = serviceName;
         this.serverList = serverList;
         this.loadBalancer = loadBalancer;
         this.statsFactory = statsFactory;
+        this.refreshScheduler = refreshScheduler;
+        this.snapshot = snapshot;
+        this.outlierDetector = outlierDetector;
+        this.healthChecker = healthChecker;
+        this.clock = clock;
+        this.subsetter = subsetter;
         setRefreshInterval(refreshInterval);
+        if (serverList instanceof ObservableServerList) {
+            ((ObservableServerList) serverList).addServerListListener(serverListListener);
+        }
         initializeServerList();
+        if (refreshScheduler != null) {
+            refreshScheduler.schedule(new RefreshTask(this), getRefreshInterval());
+            if (outlierDetector != null) {
+                refreshScheduler.schedule(new OutlierDetectionTask(this), outlierDetector.getInterval());
+            }
+        }
+        if (healthChecker != null) {
+            RefreshScheduler healthCheckScheduler = (refreshScheduler != null) ? refreshScheduler : RefreshScheduler.getDefault();
+            healthCheckScheduler.schedule(new HealthCheckTask(this), healthChecker.getPollInterval());
+        }
     }
 
     /**
@@ -147,42 +263,120 @@ public class Janus {
         return serviceName;
     }
 
+    /**
+     * Get the clock used by Janus and its servers, e.g. for clients timing requests
+     *
+     * @return the {@link JanusClock}
+     */
+    public JanusClock getClock() {
+        return clock;
+    }
+
     /**
      * Get a single server instance chosen through the {@link LoadBalancer}
      *
      * @return a server instance chosen through the load balancer.
      */
     public ServerStats getServer() {
-        updateServerList();
+        return getServer(null);
+    }
 
-        Collection<ServerStats> serverStats = servers.values();
+    /**
+     * Get a single server instance for the given key chosen through the {@link LoadBalancer}. A {@link KeyedLoadBalancer}
+     * keeps choosing the same server instance for the same key, any other load balancer ignores the key.
+     *
+     * @param key the routing key, or null to not route by key
+     * @return a server instance chosen through the load balancer.
+     */
+    public ServerStats getServer(String key) {
+        return getServer(key, getKeyedLoadBalancer(), clock.millis());
+    }
 
-        List<ServerStats> availableServerStats = new ArrayList<>(serverStats.size());
-        for (ServerStats s : serverStats) {
-            if (s.getServerInstance().isAvailable()) {
-                availableServerStats.add(s);
+    /**
+     * Get a single server instance for the given key chosen through the {@link LoadBalancer}, as of a reading of the
+     * {@link JanusClock} the caller has already taken, e.g. to time the request, so that the clock isn't read again.
+     *
+     * @param key the routing key, or null to not route by key
+     * @param nanoTime the current time, read from {@link #getClock()}
+     * @return a server instance chosen through the load balancer.
+     */
+    public ServerStats getServer(String key, long nanoTime) {
+        return getServer(key, getKeyedLoadBalancer(), TimeUnit.NANOSECONDS.toMillis(nanoTime));
+    }
+
+    private KeyedLoadBalancer getKeyedLoadBalancer() {
+        return (loadBalancer instanceof KeyedLoadBalancer) ? (KeyedLoadBalancer) loadBalancer : null;
+    }
+
+    /**
+     * Get a single server instance for the given key chosen through the given {@link KeyedLoadBalancer}, for callers
+     * which route some requests/messages by key whatever the {@link LoadBalancer} of this {@link Janus} instance is.
+     *
+     * @param key the routing key, or null to choose through the {@link LoadBalancer} instead
+     * @param keyedLoadBalancer the load balancer to route the key with, or null to choose through the {@link LoadBalancer} instead
+     * @return a server instance chosen through the load balancer.
+     */
+    public ServerStats getServer(String key, KeyedLoadBalancer keyedLoadBalancer) {
+        return getServer(key, keyedLoadBalancer, clock.millis());
+    }
+
+    private ServerStats getServer(String key, KeyedLoadBalancer keyedLoadBalancer, long now) {
+        if (refreshScheduler == null) {
+            updateServerList(now);
+            if (outlierDetector != null) {
+                outlierDetector.detectIfDue(subset, now);
+            }
+        }
+
+        AvailableServers available = getAvailableServers(now);
+
+        // let a bounded number of probe requests through to recovering servers
+        for (ServerStats s : available.halfOpenServers) {
+            if (s.getServerInstance().tryAcquireProbe()) {
+                return s;
             }
         }
 
         // done if no available servers
+        List<ServerStats> availableServerStats = available.servers;
         if (availableServerStats.isEmpty()) {
             return null;
         }
+        if (key != null && keyedLoadBalancer != null) {
+            return keyedLoadBalancer.choose(availableServerStats, key);
+        }
         return loadBalancer.choose(availableServerStats);
     }
 
+    /**
+     * Stops refreshing the server list in the background and listening for server list changes, and
+     * removes the metrics of all server instances.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (serverList instanceof ObservableServerList) {
+            ((ObservableServerList) serverList).removeServerListListener(serverListListener);
+        }
+        for (ServerStats stat : servers.values()) {
+            removeServer(stat);
+        }
+    }
+
     private void initializeServerList() {
         try {
             for (ServerInstance s : serverList.getListOfServers()) {
-                ServerStats stat = statsFactory.createServerStats(s);
-                servers.put(s.getId(), stat);
+                // may have already been pushed by an observable server list
+                if (!servers.containsKey(s.getId())) {
+                    addServer(s);
+                }
             }
         } catch (Exception e) {
             logger.error("Exception initializing the server list", e);
         }
     }
 
-    private void updateServerList() {
+    private void updateServerList(long now) {
         // only allow one thread to update the server list
         if (!updatingServer.compareAndSet(false, true)) {
             return;
@@ -190,21 +384,30 @@ public class Janus {
 
         try {
             // has the update interval been met?
-            long now = System.currentTimeMillis();
             if (getRefreshInterval() == 0 || nextUpdateTime > now) {
                 return;
             } else {
                 nextUpdateTime = now + getRefreshInterval();
             }
 
-            // update server stats with current availability
-            for (ServerInstance s : serverList.getListOfServers()) {
-                ServerStats stat = servers.get(s.getId());
-                if (stat != null) {
-                    stat.getServerInstance().setAvailable(s.isAvailable());
-                } else {
-                    stat = statsFactory.createServerStats(s);
-                    servers.put(s.getId(), stat);
+            refreshServerList();
+        } finally {
+            updatingServer.set(false);
+        }
+    }
+
+    private void refreshServerList() {
+        try {
+            // update server stats with current availability, unless changes are being pushed to us
+            if (!(serverList instanceof ObservableServerList)) {
+                for (ServerInstance s : serverList.getListOfServers()) {
+                    ServerStats stat = servers.get(s.getId());
+                    if (stat == null) {
+                        addServer(s);
+                    } else if (stat.getServerInstance() != s) {
+                        // server lists returning the same instance already keep it up to date
+                        stat.getServerInstance().setAvailable(s.isAvailable());
+                    }
                 }
             }
 
@@ -216,15 +419,183 @@ public class Janus {
                 if (!s.tick()) {
                     logger.warn("Janus removing service instance <{}> due to discovery heartbeat timeout.", s.getId());
                     iter.remove();
+                    removeServer(entry.getValue());
+                    availableServersStale.set(true);
                 }
             }
+            scheduleSnapshotSave();
         } catch (Exception e) {
             logger.error("Exception updating the server list", e);
-        } finally {
-            updatingServer.set(false);
         }
     }
 
+    private void applyServerListDelta(ServerListDelta delta) {
+        try {
+            for (ServerInstance s : delta.getRemoved()) {
+                ServerStats stat = servers.remove(s.getId());
+                if (stat != null) {
+                    logger.info("Janus removing service instance <{}> as it is no longer in the server list.", s.getId());
+                    removeServer(stat);
+                    availableServersStale.set(true);
+                }
+            }
+            for (ServerInstance s : delta.getAdded()) {
+                if (!servers.containsKey(s.getId())) {
+                    addServer(s);
+                }
+            }
+            for (ServerInstance s : delta.getChanged()) {
+                ServerStats stat = servers.get(s.getId());
+                if (stat == null) {
+                    addServer(s);
+                } else if (stat.getServerInstance() != s) {
+                    stat.getServerInstance().setAvailable(s.isAvailable());
+                }
+            }
+            scheduleSnapshotSave();
+        } catch (Exception e) {
+            logger.error("Exception applying server list changes", e);
+        }
+    }
+
+    private void scheduleSnapshotSave() {
+        if (snapshot == null || !snapshotPending.compareAndSet(false, true)) {
+            return;
+        }
+        // server list changes are pushed while the server list holds its lock, so the file is written by the scheduler
+        RefreshScheduler snapshotScheduler = (refreshScheduler != null) ? refreshScheduler : RefreshScheduler.getDefault();
+        snapshotScheduler.schedule(new SnapshotTask(this), 0);
+    }
+
+    private void saveSnapshot() {
+        if (snapshot == null || servers.isEmpty()) {
+            return;
+        }
+        // don't overwrite the last known good snapshot with the seed it is being served from
+        if (serverList instanceof SeededServerList && !((SeededServerList) serverList).isReady()) {
+            return;
+        }
+        List<ServerInstance> instances = new ArrayList<>(servers.size());
+        for (ServerStats s : servers.values()) {
+            instances.add(s.getServerInstance());
+        }
+        snapshot.save(instances);
+    }
+
+    private void addServer(ServerInstance s) {
+        // server lists hand the same instance to every Janus instance using them
+        boolean shared = s.hasListeners();
+        if (s.getClock() != clock) {
+            // it can only run on one clock
+            if (shared) {
+                logger.warn("Server instance <{}> is shared with another Janus instance, keeping its clock.", s.getId());
+            } else {
+                s.setClock(clock);
+            }
+        }
+        // created on the server instance's clock
+        ServerStats stat = statsFactory.createServerStats(s);
+        if (healthChecker != null && !shared) {
+            // no traffic until the first health check passes, unless another Janus instance is already sending it some
+            stat.getServerInstance().setHealthy(false);
+        }
+        stat.getServerInstance().addListener(availabilityListener);
+        servers.put(s.getId(), stat);
+        // health checked on the next rebuild of the available servers, if it is a candidate for the subset
+        availableServersStale.set(true);
+    }
+
+    // the subset and its standby servers, or all servers without subsetting
+    private Collection<ServerStats> selectForHealthChecks() {
+        if (subsetter == null) {
+            return servers.values();
+        }
+        return subsetter.selectForHealthChecks(servers.values(), new Predicate<ServerInstance>() {
+            @Override
+            public boolean apply(ServerInstance instance) {
+                return healthChecker.isPending(instance);
+            }
+        });
+    }
+
+    private void removeServer(ServerStats stat) {
+        stat.getServerInstance().removeListener(availabilityListener);
+        stat.removeMetrics();
+        if (healthChecker != null) {
+            healthChecker.remove(stat.getServerInstance());
+        }
+    }
+
+    /**
+     * Get the current snapshot of available servers, rebuilding it if availability has changed
+     * or a short-circuited server is due to come back.
+     */
+    private AvailableServers getAvailableServers(long now) {
+        AvailableServers available = availableServers;
+        if (availableServersStale.get() || now >= available.nextExpiration) {
+            available = rebuildAvailableServers(now);
+        }
+        return available;
+    }
+
+    private synchronized AvailableServers rebuildAvailableServers(long now) {
+        // another thread may have already rebuilt the snapshot
+        AvailableServers available = availableServers;
+        if (!availableServersStale.compareAndSet(true, false) && now < available.nextExpiration) {
+            return available;
+        }
+
+        List<ServerStats> availableServerStats = new ArrayList<>(servers.size());
+        List<ServerStats> upServerStats = new ArrayList<>(servers.size());
+        List<ServerStats> halfOpenServerStats = new ArrayList<>();
+        long nextExpiration = Long.MAX_VALUE;
+        Collection<ServerStats> candidates = (subsetter != null) ? subsetter.select(servers.values()) : servers.values();
+        subset = candidates;
+        if (healthChecker != null) {
+            // starts the checks of newly discovered servers straight away rather than on the next poll
+            healthChecker.check(selectForHealthChecks());
+        }
+        for (ServerStats s : candidates) {
+            ServerInstance instance = s.getServerInstance();
+            if (instance.isUp()) {
+                upServerStats.add(s);
+            }
+            if (instance.isAvailable()) {
+                availableServerStats.add(s);
+            } else if (instance.isShortCircuited()) {
+                nextExpiration = Math.min(nextExpiration, instance.getShortCircuitExpiration());
+            } else if (instance.isHalfOpen()) {
+                halfOpenServerStats.add(s);
+            }
+        }
+
+        // too few healthy servers left, spread the load over all servers which are up instead
+        boolean panic = availableServerStats.size() < upServerStats.size() * panicThreshold.get();
+        if (panic != available.panic) {
+            if (panic) {
+                logger.warn("Janus entering panic mode for <{}>, only {} of {} server instances are healthy.", serviceName, availableServerStats.size(), upServerStats.size());
+            } else {
+                logger.info("Janus leaving panic mode for <{}>.", serviceName);
+            }
+        }
+        if (panic) {
+            availableServerStats = upServerStats;
+        }
+
+        available = new AvailableServers(ImmutableList.copyOf(availableServerStats), ImmutableList.copyOf(halfOpenServerStats), nextExpiration, panic);
+        availableServers = available;
+        return available;
+    }
+
+    /**
+     * Is {@link Janus} in panic mode, i.e. ignoring circuit breakers because too few server instances are healthy?
+     *
+     * @return whether or not {@link Janus} is in panic mode
+     */
+    public boolean isPanicMode() {
+        return getAvailableServers(clock.millis()).panic;
+    }
+
     /**
      * Create an instance of {@link Builder}
      *
@@ -249,6 +620,14 @@ public class Janus {
         private StatsFactory statsFactory;
         private MetricRegistry metricRegistry = new MetricRegistry();
         private Long refreshIntervalInMillis = Janus.DEFAULT_REFRESH_INTERVAL_IN_MILLIS;
+        private RefreshScheduler refreshScheduler;
+        private ServerList seedServerList;
+        private SnapshotServerList snapshot;
+        private Class<? extends CircuitBreakerPolicy> circuitBreakerPolicyClass = ErrorRateCircuitBreakerPolicy.class;
+        private OutlierDetector outlierDetector;
+        private HealthChecker healthChecker;
+        private JanusClock clock = JanusClock.system();
+        private Subsetter subsetter;
 
         public Builder(String serviceName){
             Preconditions.checkArgument(!Strings.isNullOrEmpty(serviceName), "'serviceName' cannot be null or empty.");
@@ -277,6 +656,45 @@ public class Janus {
             return this;
         }
 
+        /**
+         * constructs {@link Janus} with a {@link EurekaServerList} which does not wait for its first refresh from Eureka.
+         * Until then, server instances are served from the seed server list, which defaults to the snapshot (if enabled)
+         * or otherwise a {@link ConfigServerList}.
+         * @param eurekaServiceUrl the url Eureka is listening on
+         * @param useSecure whether or not to communicate with discovered services in a secure manor.
+         * @param useInternalIp whether or not to communicate with discovered services using a private IP address.
+         * @return the Builder
+         */
+        public Builder withAsyncEureka(String eurekaServiceUrl, boolean useSecure, boolean useInternalIp) {
+            this.serverList = new EurekaServerList(eurekaServiceUrl, serviceName, useSecure, useInternalIp, true);
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} which serves server instances from the given seed {@link ServerList} until the
+         * {@link EurekaServerList} has been refreshed from Eureka for the first time.
+         * @param seedServerList the {@link ServerList} to serve from until Eureka is ready
+         * @return the Builder
+         */
+        public Builder withSeedServerList(ServerList seedServerList) {
+            Preconditions.checkNotNull(seedServerList, "'seedServerList cannot be null'");
+            this.seedServerList = seedServerList;
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} which saves a snapshot of its server instances to the given directory whenever they
+         * change. If Eureka has not been refreshed yet when {@link Janus} is built, the snapshot from the previous run
+         * is used as the seed server list.
+         * @param directory the directory to save the snapshot, "{serviceName}.snapshot", in
+         * @return the Builder
+         */
+        public Builder withSnapshotDirectory(File directory) {
+            Preconditions.checkNotNull(directory, "'directory cannot be null'");
+            this.snapshot = new SnapshotServerList(serviceName, new File(directory, serviceName + ".snapshot"));
+            return this;
+        }
+
         /**
          * constructs {@link Janus} using the given urls with a {@link ConstServerList}.
          * @param urls the urls of the service instances that {@link Janus} will discover.
@@ -298,6 +716,53 @@ public class Janus {
             return this;
         }
 
+        /**
+         * constructs {@link Janus} with a {@link PowerOfTwoChoicesLoadBalancer} comparing open requests
+         * @return the Builder
+         */
+        public Builder withPowerOfTwoChoicesLoadBalancing() {
+            return withPowerOfTwoChoicesLoadBalancing(false);
+        }
+
+        /**
+         * constructs {@link Janus} with a {@link PowerOfTwoChoicesLoadBalancer}
+         * @param latencyWeighted true to weight open requests by latency, false to only compare open requests
+         * @return the Builder
+         */
+        public Builder withPowerOfTwoChoicesLoadBalancing(boolean latencyWeighted) {
+            this.loadBalancer = new PowerOfTwoChoicesLoadBalancer(latencyWeighted);
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} with a {@link ConsistentHashLoadBalancer}, to route requests/messages by key
+         * (see {@link Janus#getServer(String)})
+         * @return the Builder
+         */
+        public Builder withConsistentHashLoadBalancing() {
+            this.loadBalancer = new ConsistentHashLoadBalancer();
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} with a {@link RendezvousHashLoadBalancer}, to route requests/messages by key
+         * (see {@link Janus#getServer(String)})
+         * @return the Builder
+         */
+        public Builder withRendezvousHashLoadBalancing() {
+            this.loadBalancer = new RendezvousHashLoadBalancer();
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} with a {@link PeakEwmaLoadBalancer}
+         * @return the Builder
+         */
+        public Builder withPeakEwmaLoadBalancing() {
+            this.loadBalancer = new PeakEwmaLoadBalancer();
+            return this;
+        }
+
         /**
          * constructs {@link Janus} with a {@link RandomLoadBalancer}. This is the default {@link LoadBalancer} that
          * the Builder will use if not overridden.
@@ -318,6 +783,24 @@ public class Janus {
             return this;
         }
 
+        /**
+         * constructs {@link Janus} with a {@link WeightedRandomLoadBalancer}
+         * @return the Builder
+         */
+        public Builder withWeightedRandomLoadBalancing() {
+            this.loadBalancer = new WeightedRandomLoadBalancer(serviceName);
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} with a {@link WeightedRoundRobinLoadBalancer}
+         * @return the Builder
+         */
+        public Builder withWeightedRoundRobinLoadBalancing() {
+            this.loadBalancer = new WeightedRoundRobinLoadBalancer(serviceName);
+            return this;
+        }
+
         /**
          * constructs {@link Janus} with a {@link ZoneAwareLoadBalancer}.
          *
@@ -363,6 +846,92 @@ public class Janus {
             return this;
         }
 
+        /**
+         * constructs {@link Janus} whose default {@link StatsFactory} short circuits server instances
+         * according to the given {@link CircuitBreakerPolicy}. Ignored if a {@link StatsFactory} is given.
+         * @param circuitBreakerPolicyClass the {@link CircuitBreakerPolicy} class to create for each server instance
+         * @return the Builder
+         */
+        public Builder withCircuitBreakerPolicy(Class<? extends CircuitBreakerPolicy> circuitBreakerPolicyClass){
+            Preconditions.checkNotNull(circuitBreakerPolicyClass, "'circuitBreakerPolicyClass cannot be null'");
+            this.circuitBreakerPolicyClass = circuitBreakerPolicyClass;
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} which periodically ejects outlying server instances with an {@link OutlierDetector}
+         * @return the Builder
+         */
+        public Builder withOutlierDetection(){
+            return withOutlierDetection(new OutlierDetector());
+        }
+
+        /**
+         * constructs {@link Janus} which periodically ejects outlying server instances with the given {@link OutlierDetector}
+         * @param outlierDetector the {@link OutlierDetector} to detect outliers with
+         * @return the Builder
+         */
+        public Builder withOutlierDetection(OutlierDetector outlierDetector){
+            Preconditions.checkNotNull(outlierDetector, "'outlierDetector cannot be null'");
+            this.outlierDetector = outlierDetector;
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} which actively checks its server instances with the given {@link HealthCheck}
+         * @param healthCheck the {@link HealthCheck} to check server instances with
+         * @return the Builder
+         */
+        public Builder withHealthCheck(HealthCheck healthCheck){
+            Preconditions.checkNotNull(healthCheck, "'healthCheck cannot be null'");
+            return withHealthChecker(new HealthChecker(healthCheck));
+        }
+
+        /**
+         * constructs {@link Janus} which actively checks its server instances with the given {@link HealthChecker},
+         * which may be shared with other {@link Janus} instances
+         * @param healthChecker the {@link HealthChecker} to check server instances with
+         * @return the Builder
+         */
+        public Builder withHealthChecker(HealthChecker healthChecker){
+            Preconditions.checkNotNull(healthChecker, "'healthChecker cannot be null'");
+            this.healthChecker = healthChecker;
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} with the given {@link JanusClock}, e.g. a cached clock, or a controllable one in tests
+         * @param clock the {@link JanusClock} to construct {@link Janus} with
+         * @return the Builder
+         */
+        public Builder withClock(JanusClock clock){
+            Preconditions.checkNotNull(clock, "'clock cannot be null'");
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} limited to a subset of the server instances (see {@link Subsetter}), identifying this
+         * client by its JVM
+         * @param subsetSize the number of server instances to use unless configured otherwise
+         * @return the Builder
+         */
+        public Builder withSubsetting(int subsetSize){
+            this.subsetter = new Subsetter(serviceName, subsetSize);
+            return this;
+        }
+
+        /**
+         * constructs {@link Janus} limited to a subset of the server instances (see {@link Subsetter})
+         * @param subsetSize the number of server instances to use unless configured otherwise
+         * @param clientId an id unique to this client, ideally stable across restarts
+         * @return the Builder
+         */
+        public Builder withSubsetting(int subsetSize, String clientId){
+            this.subsetter = new Subsetter(serviceName, subsetSize, clientId);
+            return this;
+        }
+
         /**
          * constructs {@link Janus} with a {@link MetricRegistry}
          * @param metricRegistry the {@link MetricRegistry} to construct {@link Janus} with
@@ -388,25 +957,181 @@ public class Janus {
             return this;
         }
 
+        /**
+         * constructs {@link Janus} which refreshes its internal cache of server instances in the background
+         * using the {@link RefreshScheduler} shared by all {@link Janus} instances in the JVM.
+         * @return the Builder
+         */
+        public Builder withBackgroundRefresh(){
+            return withBackgroundRefresh(RefreshScheduler.getDefault());
+        }
+
+        /**
+         * constructs {@link Janus} which refreshes its internal cache of server instances in the background
+         * using the given {@link RefreshScheduler}
+         * @param refreshScheduler the {@link RefreshScheduler} to refresh with
+         * @return the Builder
+         */
+        public Builder withBackgroundRefresh(RefreshScheduler refreshScheduler){
+            Preconditions.checkNotNull(refreshScheduler, "'refreshScheduler cannot be null'");
+            this.refreshScheduler = refreshScheduler;
+            return this;
+        }
+
         /**
          * Builds the {@link Janus} instance
          * @return {@link Janus} instance
          */
         public Janus build(){
             setDefaults();
-            return new Janus(serviceName, serverList, loadBalancer, statsFactory, refreshIntervalInMillis);
+            return new Janus(serviceName, serverList, loadBalancer, statsFactory, refreshIntervalInMillis, refreshScheduler, snapshot, outlierDetector, healthChecker, clock, subsetter);
         }
 
         private void setDefaults() {
             if(serverList == null){
                 serverList = new ConfigServerList(serviceName);
             }
+            if(serverList instanceof EurekaServerList){
+                EurekaServerList eurekaServerList = (EurekaServerList) serverList;
+                eurekaServerList.setClock(clock);
+                if(seedServerList == null && !eurekaServerList.getReadyFuture().isDone()){
+                    seedServerList = (snapshot != null) ? snapshot : new ConfigServerList(serviceName);
+                }
+                if(seedServerList != null){
+                    serverList = new SeededServerList(serverList, eurekaServerList.getReadyFuture(), seedServerList);
+                }
+            }
             if(loadBalancer == null){
                 loadBalancer = new RandomLoadBalancer();
             }
             if(statsFactory == null){
-                statsFactory = new ServerStatsFactory(ServerStats.class, metricRegistry);
+                statsFactory = new ServerStatsFactory(ServerStats.class, metricRegistry, circuitBreakerPolicyClass);
+            }
+        }
+    }
+
+    /**
+     * Refreshes the server list in the background. Only holds a weak reference to {@link Janus}
+     * so that abandoned instances can still be collected.
+     */
+    private static class RefreshTask implements RefreshScheduler.Task {
+        private final WeakReference<Janus> janusRef;
+
+        private RefreshTask(Janus janus) {
+            this.janusRef = new WeakReference<>(janus);
+        }
+
+        @Override
+        public long run() {
+            Janus janus = janusRef.get();
+            if (janus == null || janus.closed) {
+                return -1;
+            }
+
+            long refreshInterval = janus.getRefreshInterval();
+            if (refreshInterval <= 0) {
+                // refreshing is disabled, check back later in case it gets enabled
+                return DEFAULT_REFRESH_INTERVAL_IN_MILLIS;
+            }
+
+            if (janus.updatingServer.compareAndSet(false, true)) {
+                try {
+                    janus.refreshServerList();
+                } finally {
+                    janus.updatingServer.set(false);
+                }
+            }
+            return refreshInterval;
+        }
+    }
+
+    /**
+     * Runs the {@link OutlierDetector} in the background. Only holds a weak reference to {@link Janus}
+     * so that abandoned instances can still be collected.
+     */
+    private static class OutlierDetectionTask implements RefreshScheduler.Task {
+        private final WeakReference<Janus> janusRef;
+
+        private OutlierDetectionTask(Janus janus) {
+            this.janusRef = new WeakReference<>(janus);
+        }
+
+        @Override
+        public long run() {
+            Janus janus = janusRef.get();
+            if (janus == null || janus.closed) {
+                return -1;
             }
+
+            janus.outlierDetector.detect(janus.subset);
+            return janus.outlierDetector.getInterval();
+        }
+    }
+
+    /**
+     * Runs the {@link HealthChecker} in the background. Only holds a weak reference to {@link Janus}
+     * so that abandoned instances can still be collected.
+     */
+    private static class HealthCheckTask implements RefreshScheduler.Task {
+        private final WeakReference<Janus> janusRef;
+
+        private HealthCheckTask(Janus janus) {
+            this.janusRef = new WeakReference<>(janus);
+        }
+
+        @Override
+        public long run() {
+            Janus janus = janusRef.get();
+            if (janus == null || janus.closed) {
+                return -1;
+            }
+
+            janus.healthChecker.check(janus.selectForHealthChecks());
+            return janus.healthChecker.getPollInterval();
+        }
+    }
+
+    /**
+     * Saves the snapshot of the server list once in the background. Only holds a weak reference to {@link Janus}
+     * so that abandoned instances can still be collected.
+     */
+    private static class SnapshotTask implements RefreshScheduler.Task {
+        private final WeakReference<Janus> janusRef;
+
+        private SnapshotTask(Janus janus) {
+            this.janusRef = new WeakReference<>(janus);
+        }
+
+        @Override
+        public long run() {
+            Janus janus = janusRef.get();
+            if (janus == null || janus.closed) {
+                return -1;
+            }
+
+            // changes from here on schedule another save
+            janus.snapshotPending.set(false);
+            janus.saveSnapshot();
+            return -1;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the available servers handed to the {@link LoadBalancer}.
+     */
+    private static class AvailableServers {
+        private static final AvailableServers EMPTY = new AvailableServers(ImmutableList.<ServerStats>of(), ImmutableList.<ServerStats>of(), Long.MAX_VALUE, false);
+
+        private final List<ServerStats> servers;
+        private final List<ServerStats> halfOpenServers;
+        private final long nextExpiration;
+        private final boolean panic;
+
+        private AvailableServers(List<ServerStats> servers, List<ServerStats> halfOpenServers, long nextExpiration, boolean panic) {
+            this.servers = servers;
+            this.halfOpenServers = halfOpenServers;
+            this.nextExpiration = nextExpiration;
+            this.panic = panic;
         }
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The source of time for {@link Janus}, its {@link ServerInstance}s and {@link ServerStats}, and the clients built on it.
+ * <p/>
+ * Time is monotonic, so timeouts, short circuits and rates are not affected by the wall clock being set, and only
+ * meaningful relative to other readings of the same clock. Tests can supply their own implementation to control time.
+ * <p/>
+ * {@link #system()} reads {@link System#nanoTime()} on every call. {@link #cached(long)} reads a value refreshed by a
+ * background thread every tick, which is cheaper to read on hot paths at the cost of being up to a tick behind.
+ */
+public abstract class JanusClock {
+
+    /**
+     * Get the clock reading {@link System#nanoTime()} on every call, shared by everything which isn't given a clock.
+     *
+     * @return the system clock
+     */
+    public static JanusClock system() {
+        return SystemClock.INSTANCE;
+    }
+
+    /**
+     * Create a clock which is refreshed in the background every tick. Close it to stop the refreshing thread.
+     *
+     * @param tickInMillis the time (in millis) between refreshes
+     * @return the cached clock
+     */
+    public static CachedClock cached(long tickInMillis) {
+        return new CachedClock(tickInMillis);
+    }
+
+    /**
+     * Get the current time in nanos.
+     *
+     * @return the current time (in nanos)
+     */
+    public abstract long nanoTime();
+
+    /**
+     * Get the current time in millis.
+     *
+     * @return the current time (in millis)
+     */
+    public long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime());
+    }
+
+    /**
+     * A {@link JanusClock} reading {@link System#nanoTime()}, shifted to start from zero so that readings are
+     * never negative.
+     */
+    private static class SystemClock extends JanusClock {
+        private static final SystemClock INSTANCE = new SystemClock();
+        private static final long ORIGIN = System.nanoTime();
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime() - ORIGIN;
+        }
+    }
+
+    /**
+     * A {@link JanusClock} caching the system clock, refreshed by a daemon thread every tick.
+     */
+    public static class CachedClock extends JanusClock implements Closeable {
+        private final ScheduledExecutorService executor;
+        private volatile long nanoTime = SystemClock.INSTANCE.nanoTime();
+
+        private CachedClock(long tickInMillis) {
+            Preconditions.checkArgument(tickInMillis > 0, "'tickInMillis' must be > 0");
+            this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("janus-clock-%d")
+                    .setDaemon(true)
+                    .build());
+            this.executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    nanoTime = SystemClock.INSTANCE.nanoTime();
+                }
+            }, tickInMillis, tickInMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+        /**
+         * Stops refreshing the clock.
+         */
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+}
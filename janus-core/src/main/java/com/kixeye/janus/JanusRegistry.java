@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.kixeye.janus.serverlist.EurekaServerList;
+import com.kixeye.scout.eureka.EurekaServiceDiscoveryClient;
+
+/**
+ * Hands out {@link Janus} instances for many service clusters which share a single set of resources:
+ * one Eureka discovery client, one {@link RefreshScheduler} (which also watches the discovery client for each service)
+ * and one {@link MetricRegistry}. The per-service
+ * overhead in threads and Eureka traffic therefore stays flat as services are added.
+ * <p/>
+ * {@link Janus} instances are created on first use, with asynchronous Eureka initialization so many services
+ * can be initialized in parallel, and are shared by all callers asking for the same service cluster.
+ * Use {@link #builder(String)} to customize a {@link Janus} instance (e.g. its load balancer) while still
+ * sharing the registry's resources.
+ */
+public class JanusRegistry implements Closeable {
+
+    private final EurekaServiceDiscoveryClient discoveryClient;
+    private final boolean useSecure;
+    private final boolean useInternalIp;
+    private final RefreshScheduler refreshScheduler;
+    private final long refreshIntervalInMillis;
+    private final MetricRegistry metricRegistry;
+    private final File snapshotDirectory;
+
+    private final ConcurrentMap<String, Janus> instances = new ConcurrentHashMap<>();
+
+    private JanusRegistry(Builder builder) {
+        this.discoveryClient = builder.discoveryClient;
+        this.useSecure = builder.useSecure;
+        this.useInternalIp = builder.useInternalIp;
+        this.refreshScheduler = builder.refreshScheduler;
+        this.refreshIntervalInMillis = builder.refreshIntervalInMillis;
+        this.metricRegistry = builder.metricRegistry;
+        this.snapshotDirectory = builder.snapshotDirectory;
+    }
+
+    /**
+     * Create an instance of {@link Builder}
+     * @return the {@link Builder}
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the {@link Janus} instance for the given service cluster, creating it if necessary.
+     *
+     * @param serviceName the name of the service cluster
+     * @return the {@link Janus} instance
+     */
+    public Janus getJanus(String serviceName) {
+        Janus janus = instances.get(serviceName);
+        if (janus == null) {
+            janus = register(builder(serviceName).build());
+        }
+        return janus;
+    }
+
+    /**
+     * Registers a {@link Janus} instance (typically built with {@link #builder(String)}) so it is returned by
+     * {@link #getJanus(String)}. If an instance is already registered for the service cluster, the given instance
+     * is closed and the registered one is returned.
+     *
+     * @param janus the {@link Janus} instance
+     * @return the registered {@link Janus} instance
+     */
+    public Janus register(Janus janus) {
+        Preconditions.checkNotNull(janus, "'janus' cannot be null.");
+        Janus existing = instances.putIfAbsent(janus.getServiceName(), janus);
+        if (existing != null) {
+            janus.close();
+            return existing;
+        }
+        return janus;
+    }
+
+    /**
+     * Get a {@link Janus.Builder} for the given service cluster which is pre-configured with the registry's
+     * shared discovery client, {@link RefreshScheduler}, refresh interval and {@link MetricRegistry}.
+     *
+     * @param serviceName the name of the service cluster
+     * @return the pre-configured {@link Janus.Builder}
+     */
+    public Janus.Builder builder(String serviceName) {
+        Janus.Builder builder = Janus.builder(serviceName)
+                .withMetricRegistry(metricRegistry)
+                .withBackgroundRefresh(refreshScheduler)
+                .withRefreshIntervalInMillis(refreshIntervalInMillis);
+        if (snapshotDirectory != null) {
+            builder.withSnapshotDirectory(snapshotDirectory);
+        }
+        if (discoveryClient != null) {
+            builder.withEureka(new EurekaServerList(discoveryClient, serviceName, useSecure, useInternalIp, true, JanusClock.system(), refreshScheduler, refreshIntervalInMillis));
+        }
+        return builder;
+    }
+
+    /**
+     * getter for metricRegistry
+     * @return the {@link MetricRegistry} shared by all {@link Janus} instances in the registry
+     */
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * getter for refreshScheduler
+     * @return the {@link RefreshScheduler} shared by all {@link Janus} instances in the registry
+     */
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    /**
+     * getter for refreshIntervalInMillis
+     * @return the interval (in millis) at which {@link Janus} instances in the registry refresh their servers
+     */
+    public long getRefreshIntervalInMillis() {
+        return refreshIntervalInMillis;
+    }
+
+    /**
+     * Closes all {@link Janus} instances in the registry.
+     */
+    @Override
+    public void close() {
+        for (Janus janus : instances.values()) {
+            janus.close();
+        }
+        instances.clear();
+    }
+
+    /**
+     * Builder class for {@link JanusRegistry}.
+     */
+    public static class Builder {
+        private EurekaServiceDiscoveryClient discoveryClient;
+        private boolean useSecure;
+        private boolean useInternalIp;
+        private RefreshScheduler refreshScheduler = RefreshScheduler.getDefault();
+        private long refreshIntervalInMillis = Janus.DEFAULT_REFRESH_INTERVAL_IN_MILLIS;
+        private MetricRegistry metricRegistry = new MetricRegistry();
+        private File snapshotDirectory;
+
+        /**
+         * constructs the registry with a single discovery client for the given Eureka url
+         * @param eurekaServiceUrl the url Eureka is listening on
+         * @param useSecure whether or not to communicate with discovered services in a secure manor.
+         * @param useInternalIp whether or not to communicate with discovered services using a private IP address.
+         * @return the Builder
+         */
+        public Builder withEureka(String eurekaServiceUrl, boolean useSecure, boolean useInternalIp) {
+            Preconditions.checkArgument(!Strings.isNullOrEmpty(eurekaServiceUrl), "'eurekaServiceUrl' cannot be null or empty.");
+            return withEureka(new EurekaServiceDiscoveryClient(eurekaServiceUrl, 30, TimeUnit.SECONDS), useSecure, useInternalIp);
+        }
+
+        /**
+         * constructs the registry with a pre-configured discovery client
+         * @param discoveryClient the discovery client shared by all services
+         * @param useSecure whether or not to communicate with discovered services in a secure manor.
+         * @param useInternalIp whether or not to communicate with discovered services using a private IP address.
+         * @return the Builder
+         */
+        public Builder withEureka(EurekaServiceDiscoveryClient discoveryClient, boolean useSecure, boolean useInternalIp) {
+            this.discoveryClient = Preconditions.checkNotNull(discoveryClient, "'discoveryClient cannot be null'");
+            this.useSecure = useSecure;
+            this.useInternalIp = useInternalIp;
+            return this;
+        }
+
+        /**
+         * constructs the registry with a {@link RefreshScheduler}, defaults to the one shared by the JVM
+         * @param refreshScheduler the {@link RefreshScheduler} shared by all services
+         * @return the Builder
+         */
+        public Builder withRefreshScheduler(RefreshScheduler refreshScheduler) {
+            this.refreshScheduler = Preconditions.checkNotNull(refreshScheduler, "'refreshScheduler cannot be null'");
+            return this;
+        }
+
+        /**
+         * constructs the registry with the interval to refresh each service's server instances at, which also
+         * sets how often unchanged Eureka server instances are re-published
+         * @param refreshIntervalInMillis the refresh interval (in millis)
+         * @return the Builder
+         */
+        public Builder withRefreshIntervalInMillis(long refreshIntervalInMillis) {
+            Preconditions.checkArgument(refreshIntervalInMillis >= 0, "'refreshIntervalInMillis' must be >= 0");
+            this.refreshIntervalInMillis = refreshIntervalInMillis;
+            return this;
+        }
+
+        /**
+         * constructs the registry with a {@link MetricRegistry}
+         * @param metricRegistry the {@link MetricRegistry} shared by all services
+         * @return the Builder
+         */
+        public Builder withMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = Preconditions.checkNotNull(metricRegistry, "'metricRegistry cannot be null'");
+            return this;
+        }
+
+        /**
+         * constructs the registry with server list snapshots saved to the given directory
+         * @param snapshotDirectory the directory to save snapshots in
+         * @return the Builder
+         */
+        public Builder withSnapshotDirectory(File snapshotDirectory) {
+            this.snapshotDirectory = Preconditions.checkNotNull(snapshotDirectory, "'snapshotDirectory cannot be null'");
+            return this;
+        }
+
+        /**
+         * Builds the {@link JanusRegistry}
+         * @return the {@link JanusRegistry}
+         */
+        public JanusRegistry build() {
+            return new JanusRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.google.common.base.Preconditions;
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Tracks the latency of requests/messages to a server instance with nanosecond resolution, using an
+ * HdrHistogram {@link Recorder}. Recording is wait-free and never allocates.
+ * <p/>
+ * Latencies are recorded into an interval histogram which is swapped out (by default every second, configurable
+ * by setting/updating the property "janus.latencyIntervalInMillis") when read. The percentiles of the last
+ * completed interval are computed once per swap, so reading them, e.g. from a {@link com.kixeye.janus.loadbalancer.LoadBalancer},
+ * is as cheap as reading a field. Intervals without any recorded latencies keep the previous interval's values.
+ * <p/>
+ * Latencies above 1 minute are recorded as 1 minute.
+ */
+public class LatencyRecorder {
+    public static final String LATENCY_INTERVAL_IN_MILLIS = "janus.latencyIntervalInMillis";
+    public static final long DEFAULT_LATENCY_INTERVAL_IN_MILLIS = 1000;
+
+    private static final DynamicLongProperty latencyInterval = DynamicPropertyFactory.getInstance().getLongProperty(LATENCY_INTERVAL_IN_MILLIS, DEFAULT_LATENCY_INTERVAL_IN_MILLIS);
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final JanusClock clock;
+
+    // guarded by this
+    private Histogram intervalHistogram;
+    private long nextSwapTime;
+
+    private volatile Percentiles percentiles = Percentiles.EMPTY;
+
+    public LatencyRecorder() {
+        this(JanusClock.system());
+    }
+
+    /**
+     * @param clock the {@link JanusClock} timing the intervals
+     */
+    public LatencyRecorder(JanusClock clock) {
+        this.clock = Preconditions.checkNotNull(clock, "'clock' cannot be null.");
+        this.nextSwapTime = clock.nanoTime();
+    }
+
+    /**
+     * record the latency of a request/message
+     * @param latencyInNanos the latency (in nanos)
+     */
+    public void record(long latencyInNanos) {
+        if (latencyInNanos < 0) {
+            return;
+        }
+        recorder.recordValue(Math.min(latencyInNanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * get the median latency of the last interval
+     * @return the median latency (in nanos)
+     */
+    public long getP50() {
+        return getPercentiles().p50;
+    }
+
+    /**
+     * get the 99th percentile latency of the last interval
+     * @return the 99th percentile latency (in nanos)
+     */
+    public long getP99() {
+        return getPercentiles().p99;
+    }
+
+    /**
+     * get the 99.9th percentile latency of the last interval
+     * @return the 99.9th percentile latency (in nanos)
+     */
+    public long getP999() {
+        return getPercentiles().p999;
+    }
+
+    /**
+     * get the mean latency of the last interval
+     * @return the mean latency (in nanos)
+     */
+    public double getMean() {
+        return getPercentiles().mean;
+    }
+
+    /**
+     * get the number of latencies recorded in the last interval
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return getPercentiles().count;
+    }
+
+    private Percentiles getPercentiles() {
+        if (clock.nanoTime() - nextSwapTime >= 0) {
+            swap();
+        }
+        return percentiles;
+    }
+
+    private synchronized void swap() {
+        long now = clock.nanoTime();
+        if (now - nextSwapTime < 0) {
+            // another thread already swapped
+            return;
+        }
+        nextSwapTime = now + TimeUnit.MILLISECONDS.toNanos(latencyInterval.get());
+
+        intervalHistogram = (intervalHistogram == null) ? recorder.getIntervalHistogram() : recorder.getIntervalHistogram(intervalHistogram);
+        if (intervalHistogram.getTotalCount() > 0) {
+            percentiles = new Percentiles(intervalHistogram);
+        }
+    }
+
+    private static class Percentiles {
+        private static final Percentiles EMPTY = new Percentiles();
+
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p99;
+        private final long p999;
+
+        private Percentiles() {
+            this.count = 0;
+            this.mean = 0;
+            this.p50 = 0;
+            this.p99 = 0;
+            this.p999 = 0;
+        }
+
+        private Percentiles(Histogram histogram) {
+            this.count = histogram.getTotalCount();
+            this.mean = histogram.getMean();
+            this.p50 = histogram.getValueAtPercentile(50.0);
+            this.p99 = histogram.getValueAtPercentile(99.0);
+            this.p999 = histogram.getValueAtPercentile(99.9);
+        }
+    }
+}
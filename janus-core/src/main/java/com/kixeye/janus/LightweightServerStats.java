@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link ServerStats} implementation for high request rates. Counters are kept in striped counters and
+ * primitive fields rather than Dropwizard {@link com.codahale.metrics.Meter}s and {@link com.codahale.metrics.Counter}s,
+ * rates are computed lazily when read, and the {@link MetricRegistry} only sees {@link Gauge}s which read the
+ * counters when reported. Recording a request therefore costs a few uncontended atomic adds.
+ * <p/>
+ * Latencies only go into the latency totals (see {@link #getLatencyCount()} and {@link #getLatencyTotalNanos()}),
+ * reported as the "latency-count" and "latency-total-nanos" gauges. The latency histogram, the percentiles of the
+ * {@link LatencyRecorder} and the {@link PeakEwma} are not kept, all instances share an empty one, so use the default
+ * {@link ServerStats} with load balancers which weigh servers by latency.
+ * <p/>
+ * Message rates are averaged over (roughly) the last minute, like the one minute rate of the default
+ * {@link ServerStats}, but without exponential weighting.
+ * <p/>
+ * Use it by creating a {@link ServerStatsFactory} with this class.
+ */
+public class LightweightServerStats extends ServerStats {
+    private static final long RATE_WINDOW_IN_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long RATE_MIN_ELAPSED_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // never recorded to, so they can be shared by all instances
+    private static final LatencyRecorder EMPTY_LATENCY_RECORDER = new LatencyRecorder();
+    private static final PeakEwma EMPTY_PEAK_EWMA = new PeakEwma();
+
+    private final StripedCounter openRequests = new StripedCounter();
+    private final StripedCounter openSessions = new StripedCounter();
+    private final StripedCounter errors = new StripedCounter();
+    private final StripedCounter circuitBreakerTripped = new StripedCounter();
+    private final Rate sentMessages = new Rate();
+    private final Rate receivedMessages = new Rate();
+
+    /**
+     *
+     * @param metricRegistry registry containing the metrics
+     */
+    @Override
+    public void setMetricRegistry(MetricRegistry metricRegistry) {
+        this.metrics = Preconditions.checkNotNull(metricRegistry, "'metricRegistry' cannot be null.");
+        register("open-requests", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return openRequests.sum();
+            }
+        });
+        register("open-sessions", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return openSessions.sum();
+            }
+        });
+        register("sent-messages-per-second", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return sentMessages.getRate();
+            }
+        });
+        register("received-messages-per-second", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return receivedMessages.getRate();
+            }
+        });
+        register("errors", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return errors.sum();
+            }
+        });
+        register("short-circuit-tripped", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return circuitBreakerTripped.sum();
+            }
+        });
+        register("short-circuit-time-remaining", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return server.getCircuitBreakerRemainingTime();
+            }
+        });
+        register("latency-count", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getLatencyCount();
+            }
+        });
+        register("latency-total-nanos", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getLatencyTotalNanos();
+            }
+        });
+    }
+
+    @Override
+    protected LatencyRecorder createLatencyRecorder(JanusClock clock) {
+        return EMPTY_LATENCY_RECORDER;
+    }
+
+    @Override
+    protected PeakEwma createPeakEwma() {
+        return EMPTY_PEAK_EWMA;
+    }
+
+    @Override
+    public void incrementOpenRequests() {
+        openRequests.increment();
+    }
+
+    @Override
+    public void decrementOpenRequests() {
+        openRequests.decrement();
+    }
+
+    @Override
+    public long getOpenRequestCount() {
+        return openRequests.sum();
+    }
+
+    @Override
+    public void recordLatency(long latencyInMs) {
+        recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(latencyInMs));
+    }
+
+    @Override
+    public void recordLatencyNanos(long latencyInNanos, long nanoTime) {
+        recordLatencyTotal(latencyInNanos);
+    }
+
+    @Override
+    public void incrementOpenSessions() {
+        openSessions.increment();
+    }
+
+    @Override
+    public void decrementOpenSessions() {
+        openSessions.decrement();
+    }
+
+    @Override
+    public long getOpenSessionsCount() {
+        return openSessions.sum();
+    }
+
+    @Override
+    public void incrementErrors() {
+        errors.increment();
+        if (recordError()) {
+            circuitBreakerTripped.increment();
+        }
+    }
+
+    @Override
+    public void ejectOutlier() {
+        recordEjection();
+        circuitBreakerTripped.increment();
+    }
+
+    @Override
+    public void incrementSentMessages() {
+        sentMessages.mark();
+    }
+
+    @Override
+    public double getSentMessagesPerSecond() {
+        return sentMessages.getRate();
+    }
+
+    @Override
+    public void incrementReceivedMessages() {
+        receivedMessages.mark();
+        recordSuccess();
+    }
+
+    @Override
+    public double getReceivedMessagesPerSecond() {
+        return receivedMessages.getRate();
+    }
+
+    /**
+     * Counts events and computes their rate when read, from the change in count since a sample taken up to
+     * a minute earlier on the server instance's {@link JanusClock}.
+     */
+    private class Rate {
+        private final StripedCounter count = new StripedCounter();
+
+        // guarded by this
+        private JanusClock clock;
+        private long start;
+        private long sampleTime;
+        private long sampleCount;
+        private double previousRate;
+
+        private void mark() {
+            count.increment();
+        }
+
+        private synchronized double getRate() {
+            JanusClock currentClock = server.getClock();
+            long now = currentClock.nanoTime();
+            long current = count.sum();
+            if (currentClock != clock) {
+                // first read, or the server instance moved to another clock, so there is nothing to measure from yet
+                clock = currentClock;
+                start = now;
+                sampleTime = now;
+                sampleCount = current;
+                previousRate = 0.0;
+                return 0.0;
+            }
+
+            long elapsed = now - sampleTime;
+            if (elapsed < RATE_MIN_ELAPSED_IN_NANOS) {
+                // too soon after the last sample to be meaningful, unless this is the first sample
+                return (sampleTime == start) ? 0.0 : previousRate;
+            }
+
+            double rate = (current - sampleCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            if (elapsed >= RATE_WINDOW_IN_NANOS) {
+                sampleTime = now;
+                sampleCount = current;
+                previousRate = rate;
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.config.DynamicDoubleProperty;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Periodically compares the server instances of a service cluster with each other and temporarily ejects the
+ * statistical outliers by tripping their circuit breakers, so that they come back through the usual half-open
+ * probing once the short circuit expires.
+ * <p/>
+ * Each run looks at the requests/messages recorded since the previous run. Only server instances whose circuit
+ * breaker is closed and which saw a minimum number of requests take part. A server instance is an outlier if
+ * <ul>
+ *     <li>its success rate is more than a number of standard deviations below the mean success rate of the cluster, or</li>
+ *     <li>its mean latency is more than a multiple of the median of the mean latencies of the cluster.</li>
+ * </ul>
+ * Nothing is ejected once the server instances which are short circuited (for any reason) reach a maximum
+ * percentage of the cluster, although at least one server instance may always be ejected. Ejections count towards the
+ * "short-circuit-tripped" metric of the server instance like any other trip of its circuit breaker.
+ * <p/>
+ * The behaviour can be configured by setting/updating the properties
+ * <ul>
+ *     <li>"janus.outlierDetection.intervalInMillis" - time between runs (defaults to 10000)</li>
+ *     <li>"janus.outlierDetection.minRequests" - requests a server instance needs per run to take part (defaults to 20)</li>
+ *     <li>"janus.outlierDetection.minServers" - server instances needed to take part for a run to eject anything (defaults to 3)</li>
+ *     <li>"janus.outlierDetection.successRateStdevFactor" - standard deviations below the mean success rate (defaults to 1.9)</li>
+ *     <li>"janus.outlierDetection.latencyFactor" - multiple of the median latency (defaults to 3.0)</li>
+ *     <li>"janus.outlierDetection.maxEjectionPercent" - maximum percentage of the cluster to short circuit (defaults to 20)</li>
+ * </ul>
+ */
+public class OutlierDetector {
+    private static final Logger logger = LoggerFactory.getLogger(OutlierDetector.class);
+
+    public static final String INTERVAL_IN_MILLIS = "janus.outlierDetection.intervalInMillis";
+    public static final long DEFAULT_INTERVAL_IN_MILLIS = 10000;
+    public static final String MIN_REQUESTS = "janus.outlierDetection.minRequests";
+    public static final String MIN_SERVERS = "janus.outlierDetection.minServers";
+    public static final String SUCCESS_RATE_STDEV_FACTOR = "janus.outlierDetection.successRateStdevFactor";
+    public static final String LATENCY_FACTOR = "janus.outlierDetection.latencyFactor";
+    public static final String MAX_EJECTION_PERCENT = "janus.outlierDetection.maxEjectionPercent";
+
+    private static final DynamicLongProperty interval = DynamicPropertyFactory.getInstance().getLongProperty(INTERVAL_IN_MILLIS, DEFAULT_INTERVAL_IN_MILLIS);
+    private static final DynamicIntProperty minRequests = DynamicPropertyFactory.getInstance().getIntProperty(MIN_REQUESTS, 20);
+    private static final DynamicIntProperty minServers = DynamicPropertyFactory.getInstance().getIntProperty(MIN_SERVERS, 3);
+    private static final DynamicDoubleProperty successRateStdevFactor = DynamicPropertyFactory.getInstance().getDoubleProperty(SUCCESS_RATE_STDEV_FACTOR, 1.9);
+    private static final DynamicDoubleProperty latencyFactor = DynamicPropertyFactory.getInstance().getDoubleProperty(LATENCY_FACTOR, 3.0);
+    private static final DynamicIntProperty maxEjectionPercent = DynamicPropertyFactory.getInstance().getIntProperty(MAX_EJECTION_PERCENT, 20);
+
+    private volatile long nextDetectionTime = -1;
+
+    private final Lock lock = new ReentrantLock();
+    // guarded by lock
+    private Map<String, Sample> lastSamples = new HashMap<>();
+
+    /**
+     * get the time between runs
+     * @return the interval (in millis)
+     */
+    public long getInterval() {
+        return interval.get();
+    }
+
+    /**
+     * run the detection if the interval has passed since the last run, unless another thread is running it. since
+     * this is called on request threads, it never waits for the other thread
+     * @param servers the server instances of the cluster
+     * @param now the current time (in millis)
+     */
+    public void detectIfDue(Collection<ServerStats> servers, long now) {
+        if (now < nextDetectionTime || !lock.tryLock()) {
+            return;
+        }
+        try {
+            // another thread may have already run the detection
+            if (now < nextDetectionTime) {
+                return;
+            }
+            nextDetectionTime = now + getInterval();
+            detectLocked(servers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * compare the server instances with each other and eject the outliers
+     * @param servers the server instances of the cluster
+     */
+    public void detect(Collection<ServerStats> servers) {
+        lock.lock();
+        try {
+            detectLocked(servers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void detectLocked(Collection<ServerStats> servers) {
+        List<Sample> candidates = new ArrayList<>(servers.size());
+        Map<String, Sample> samples = new HashMap<>();
+        int shortCircuited = 0;
+        for (ServerStats stat : servers) {
+            Sample sample = new Sample(stat, lastSamples.get(stat.getServerInstance().getId()));
+            samples.put(stat.getServerInstance().getId(), sample);
+
+            if (stat.getServerInstance().getCircuitBreakerState() != ServerInstance.CircuitBreakerState.CLOSED) {
+                shortCircuited++;
+            } else if (sample.requests >= minRequests.get()) {
+                candidates.add(sample);
+            }
+        }
+        lastSamples = samples;
+
+        if (candidates.size() < minServers.get() || maxEjectionPercent.get() <= 0) {
+            return;
+        }
+        int maxEjected = Math.max(1, servers.size() * maxEjectionPercent.get() / 100);
+
+        double minSuccessRate = getMinSuccessRate(candidates);
+        double maxLatency = getMaxLatency(candidates);
+        for (Sample sample : candidates) {
+            if (shortCircuited >= maxEjected) {
+                break;
+            }
+            ServerInstance instance = sample.stat.getServerInstance();
+            if (sample.successRate < minSuccessRate) {
+                logger.warn("Short circuiting <{},{}> because its success rate {} is an outlier", instance.getId(), instance.getHost(), sample.successRate);
+            } else if (sample.latency > maxLatency) {
+                logger.warn("Short circuiting <{},{}> because its mean latency of {}ns is an outlier", instance.getId(), instance.getHost(), (long) sample.latency);
+            } else {
+                continue;
+            }
+            sample.stat.ejectOutlier();
+            shortCircuited++;
+        }
+    }
+
+    private static double getMinSuccessRate(List<Sample> candidates) {
+        double sum = 0;
+        for (Sample sample : candidates) {
+            sum += sample.successRate;
+        }
+        double mean = sum / candidates.size();
+
+        double squares = 0;
+        for (Sample sample : candidates) {
+            squares += (sample.successRate - mean) * (sample.successRate - mean);
+        }
+        double stdev = Math.sqrt(squares / candidates.size());
+        return mean - successRateStdevFactor.get() * stdev;
+    }
+
+    private static double getMaxLatency(List<Sample> candidates) {
+        double[] latencies = new double[candidates.size()];
+        int count = 0;
+        for (Sample sample : candidates) {
+            if (!Double.isNaN(sample.latency)) {
+                latencies[count++] = sample.latency;
+            }
+        }
+        if (count < minServers.get()) {
+            return Double.MAX_VALUE;
+        }
+        Arrays.sort(latencies, 0, count);
+        double median = (count % 2 == 1) ? latencies[count / 2] : (latencies[count / 2 - 1] + latencies[count / 2]) / 2;
+        return median * latencyFactor.get();
+    }
+
+    /**
+     * The outcomes of a server instance since the previous run.
+     */
+    private static class Sample {
+        private final ServerStats stat;
+        private final long successes;
+        private final long errors;
+        private final long latencyCount;
+        private final long latencyTotalNanos;
+        private final long requests;
+        private final double successRate;
+        private final double latency;
+
+        private Sample(ServerStats stat, Sample last) {
+            this.stat = stat;
+            this.successes = stat.getSuccessCount();
+            this.errors = stat.getErrorCount();
+            this.latencyCount = stat.getLatencyCount();
+            this.latencyTotalNanos = stat.getLatencyTotalNanos();
+
+            // the stats of a re-added server instance start from zero
+            boolean continued = last != null && last.stat == stat;
+            long successDelta = continued ? successes - last.successes : successes;
+            long errorDelta = continued ? errors - last.errors : errors;
+            this.requests = successDelta + errorDelta;
+            this.successRate = (requests > 0) ? (double) successDelta / requests : 1.0;
+
+            // the mean latency of the requests since the previous run
+            long latencyCountDelta = continued ? latencyCount - last.latencyCount : latencyCount;
+            long latencyTotalDelta = continued ? latencyTotalNanos - last.latencyTotalNanos : latencyTotalNanos;
+            this.latency = (latencyCountDelta > 0) ? (double) latencyTotalDelta / latencyCountDelta : Double.NaN;
+        }
+    }
+}
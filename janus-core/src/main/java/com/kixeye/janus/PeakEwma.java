@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * A peak sensitive, exponentially weighted moving average of the latency of a server instance. A latency above the
+ * average replaces it straight away, while lower latencies (and time passing without any latencies) pull it down
+ * gradually, so a server instance which gets slow is noticed on its next response rather than after an average of
+ * many responses catches up.
+ * <p/>
+ * The average decays over a window which defaults to 10 seconds and can be configured by setting/updating the
+ * property "janus.peakEwma.decayInMillis".
+ */
+public class PeakEwma {
+    public static final String DECAY_IN_MILLIS = "janus.peakEwma.decayInMillis";
+    public static final long DEFAULT_DECAY_IN_MILLIS = 10000;
+
+    private static final DynamicLongProperty decay = DynamicPropertyFactory.getInstance().getLongProperty(DECAY_IN_MILLIS, DEFAULT_DECAY_IN_MILLIS);
+
+    // guarded by this
+    private long stamp;
+    private double cost;
+
+    /**
+     * record the latency of a request/message
+     * @param latencyInNanos the latency (in nanos)
+     * @param nanoTime the time the request/message completed, from a {@link JanusClock}
+     */
+    public synchronized void record(long latencyInNanos, long nanoTime) {
+        if (latencyInNanos >= 0) {
+            observe(latencyInNanos, nanoTime);
+        }
+    }
+
+    /**
+     * get the average latency, decayed to the given time
+     * @param nanoTime the current time, from a {@link JanusClock}
+     * @return the average latency (in nanos), 0 if no latencies were recorded
+     */
+    public synchronized double get(long nanoTime) {
+        // time without latencies counts as latencies of zero
+        observe(0, nanoTime);
+        return cost;
+    }
+
+    private void observe(long latencyInNanos, long nanoTime) {
+        long elapsed = Math.max(nanoTime - stamp, 0);
+        if (latencyInNanos > cost) {
+            cost = latencyInNanos;
+        } else {
+            double weight = Math.exp(-elapsed / (Math.max(decay.get(), 1) * 1000000.0));
+            cost = cost * weight + latencyInNanos * (1 - weight);
+        }
+        stamp = Math.max(stamp, nanoTime);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.io.Closeable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.config.DynamicDoubleProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Runs periodic background work, such as server list refreshes, on a small bounded pool of daemon threads
+ * so that no caller thread ever pays for it.
+ * <p/>
+ * Each run is rescheduled with a random jitter (by default +/- 10% of the requested delay) so that many tasks
+ * with the same interval do not all fire at once. The jitter can be configured by setting/updating the property
+ * "janus.refreshJitter".
+ * <p/>
+ * A single default instance, sized by the property "janus.refreshThreads" (defaults to 2), is shared by all
+ * {@link Janus} instances in the JVM.
+ */
+public class RefreshScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    public static final String REFRESH_THREADS = "janus.refreshThreads";
+    public static final int DEFAULT_REFRESH_THREADS = 2;
+    public static final String REFRESH_JITTER = "janus.refreshJitter";
+    public static final double DEFAULT_REFRESH_JITTER = 0.1;
+
+    private static final DynamicDoubleProperty refreshJitter = DynamicPropertyFactory.getInstance().getDoubleProperty(REFRESH_JITTER, DEFAULT_REFRESH_JITTER);
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * @param threads the maximum number of threads used to run scheduled tasks
+     */
+    public RefreshScheduler(int threads) {
+        Preconditions.checkArgument(threads > 0, "'threads' must be > 0");
+        this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactoryBuilder()
+                .setNameFormat("janus-refresh-%d")
+                .setDaemon(true)
+                .build());
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Get the scheduler shared by all {@link Janus} instances in the JVM.
+     *
+     * @return the shared scheduler
+     */
+    public static RefreshScheduler getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Get the underlying executor, for tasks which manage their own scheduling.
+     *
+     * @return the executor
+     */
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Schedule the given task to run after (roughly) the given delay, and then repeatedly after
+     * each delay the task returns until it returns a negative delay or the scheduler is closed.
+     * A run which throws an exception is logged and the task runs again after its previous delay,
+     * only an {@link Error} stops the task.
+     *
+     * @param task         the task to run
+     * @param initialDelay the delay (in millis) before the first run
+     */
+    public void schedule(Task task, long initialDelay) {
+        Preconditions.checkNotNull(task, "'task' cannot be null.");
+        submit(new Runner(task, initialDelay), initialDelay);
+    }
+
+    /**
+     * Stops running scheduled tasks.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void submit(Runner runner, long delay) {
+        try {
+            executor.schedule(runner, jitter(delay), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("RefreshScheduler is closed, dropping task {}", runner.task);
+        }
+    }
+
+    /**
+     * jitter the given delay by the configured fraction, see {@link #REFRESH_JITTER}
+     * @param delay the delay (in millis)
+     * @return the jittered delay (in millis), >= 0
+     */
+    static long jitter(long delay) {
+        long range = (long) (delay * refreshJitter.get());
+        if (range <= 0) {
+            return Math.max(delay, 0);
+        }
+        return Math.max(delay + ThreadLocalRandom.current().nextLong(-range, range + 1), 0);
+    }
+
+    /**
+     * A periodic task run by a {@link RefreshScheduler}.
+     */
+    public interface Task {
+
+        /**
+         * Perform the work.
+         *
+         * @return the delay (in millis) until the next run, or a negative value to stop running the task.
+         */
+        long run();
+    }
+
+    private class Runner implements Runnable {
+        private final Task task;
+        // only accessed by the run in progress
+        private long lastDelay;
+
+        private Runner(Task task, long initialDelay) {
+            this.task = task;
+            this.lastDelay = initialDelay;
+        }
+
+        @Override
+        public void run() {
+            long delay;
+            try {
+                delay = task.run();
+            } catch (Error e) {
+                logger.error("Unexpected error in scheduled task, task will not be rescheduled.", e);
+                return;
+            } catch (Throwable t) {
+                // a transient failure must not turn off the task for the life of the process
+                logger.error("Unexpected exception in scheduled task, rescheduling it.", t);
+                delay = lastDelay;
+            }
+            if (delay >= 0) {
+                lastDelay = delay;
+                submit(this, delay);
+            }
+        }
+    }
+
+    private static class DefaultHolder {
+        private static final RefreshScheduler INSTANCE = new RefreshScheduler(
+                DynamicPropertyFactory.getInstance().getIntProperty(REFRESH_THREADS, DEFAULT_REFRESH_THREADS).get());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Counts events within a rolling time window using a fixed ring of buckets, each covering an equal slice of
+ * the window. Increments are O(1), sums are O(number of buckets) and never allocate, so counting stays cheap
+ * even at thousands of events per second.
+ * <p/>
+ * A bucket is lazily reset by the first update which finds it holding a previous slice of time. Updates racing
+ * with that reset may be lost, making the count slightly approximate while the window rolls over.
+ */
+class RollingCounter {
+    private final int buckets;
+    private final long bucketDurationInNanos;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray slices;
+
+    /**
+     * @param window the duration of the window
+     * @param unit the unit of the window duration
+     * @param buckets the number of buckets the window is divided into
+     */
+    RollingCounter(long window, TimeUnit unit, int buckets) {
+        Preconditions.checkArgument(buckets > 0, "'buckets' must be > 0");
+        this.buckets = buckets;
+        this.bucketDurationInNanos = Math.max(1, unit.toNanos(window) / buckets);
+        this.counts = new AtomicLongArray(buckets);
+        this.slices = new AtomicLongArray(buckets);
+        reset();
+    }
+
+    /**
+     * clear all buckets
+     */
+    void reset() {
+        for (int i = 0; i < buckets; i++) {
+            slices.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * increment the count, without summing the window
+     * @param nanoTime the current time, from {@link System#nanoTime()}
+     */
+    void increment(long nanoTime) {
+        incrementSlice(nanoTime / bucketDurationInNanos);
+    }
+
+    /**
+     * increment the count and return the resulting count within the window
+     * @param nanoTime the current time, from {@link System#nanoTime()}
+     * @return the count within the window
+     */
+    long incrementAndSum(long nanoTime) {
+        long slice = nanoTime / bucketDurationInNanos;
+        incrementSlice(slice);
+        return sumSlices(slice);
+    }
+
+    /**
+     * get the count within the window
+     * @param nanoTime the current time, from {@link System#nanoTime()}
+     * @return the count within the window
+     */
+    long sum(long nanoTime) {
+        return sumSlices(nanoTime / bucketDurationInNanos);
+    }
+
+    private void incrementSlice(long slice) {
+        int index = (int) Math.abs(slice % buckets);
+        long bucketSlice = slices.get(index);
+        if (bucketSlice != slice && slices.compareAndSet(index, bucketSlice, slice)) {
+            counts.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+    }
+
+    private long sumSlices(long slice) {
+        long sum = 0;
+        for (int i = 0; i < buckets; i++) {
+            long bucketSlice = slices.get(i);
+            if (bucketSlice <= slice && bucketSlice > slice - buckets) {
+                sum += counts.get(i);
+            }
+        }
+        return sum;
+    }
+}
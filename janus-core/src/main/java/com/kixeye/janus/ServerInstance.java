@@ -19,7 +19,13 @@
  */
 package com.kixeye.janus;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.base.Preconditions;
 import com.netflix.config.ConfigurationManager;
+import com.netflix.config.DynamicDoubleProperty;
+import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicLongProperty;
 import com.netflix.config.DynamicPropertyFactory;
 
@@ -33,15 +39,57 @@ import com.netflix.config.DynamicPropertyFactory;
  * If tripCircuitBreaker() is called on a {@link ServerInstance} that is already tripped, the amount of time that the server will be short-circuited will increase exponentially based
  * on the number of times it was tripped.
  *
+ * Once the short-circuit expires the circuit breaker is half-open: the instance is not available for general traffic, but a bounded number of concurrent probe
+ * requests (by default 1, configurable by setting/updating the property "janus.circuitBreaker.halfOpenMaxProbes") may be sent to it via tryAcquireProbe().
+ * After enough probes succeed (by default 3, configurable by setting/updating the property "janus.circuitBreaker.halfOpenSuccessThreshold") the circuit breaker
+ * closes and the instance takes full traffic again, while a failed probe trips the circuit breaker again. A probe which neither succeeds nor fails within
+ * "janus.circuitBreaker.probeTimeoutInMillis" (defaults to 5 seconds) no longer counts against the concurrent probe limit.
+ * <p/>
+ * A server instance can be slow started: for a window after it is first discovered, and after its circuit breaker closes (or it passes
+ * its health checks) again, its
+ * selection weight (see getWeight()) ramps up from a floor to full, so that weight-aware load balancers only send it a growing share of
+ * the traffic while it warms up. The window defaults to 0 (no slow start) and is set by setting/updating the property
+ * "janus.slowStart.windowInMillis". The floor (defaults to 0.1) and the shape of the ramp (defaults to 1.0, linear; higher values ramp up faster
+ * early on) are configured by the properties "janus.slowStart.minWeight" and "janus.slowStart.aggression".
+ *
  * @author cbarry@kixeye.com
  */
 public class ServerInstance {
     public static final String SHORT_CIRCUIT_DURATION = "janus.shortCircuitDuration";
     public static final DynamicLongProperty shortCircuitDuration = DynamicPropertyFactory.getInstance().getLongProperty(SHORT_CIRCUIT_DURATION, 30000);
+    public static final String HALF_OPEN_MAX_PROBES = "janus.circuitBreaker.halfOpenMaxProbes";
+    public static final String HALF_OPEN_SUCCESS_THRESHOLD = "janus.circuitBreaker.halfOpenSuccessThreshold";
+    public static final String PROBE_TIMEOUT_IN_MILLIS = "janus.circuitBreaker.probeTimeoutInMillis";
+
+    private static final DynamicIntProperty halfOpenMaxProbes = DynamicPropertyFactory.getInstance().getIntProperty(HALF_OPEN_MAX_PROBES, 1);
+    private static final DynamicIntProperty halfOpenSuccessThreshold = DynamicPropertyFactory.getInstance().getIntProperty(HALF_OPEN_SUCCESS_THRESHOLD, 3);
+    private static final DynamicLongProperty probeTimeout = DynamicPropertyFactory.getInstance().getLongProperty(PROBE_TIMEOUT_IN_MILLIS, 5000);
+
+    public static final String SLOW_START_WINDOW_IN_MILLIS = "janus.slowStart.windowInMillis";
+    public static final String SLOW_START_MIN_WEIGHT = "janus.slowStart.minWeight";
+    public static final String SLOW_START_AGGRESSION = "janus.slowStart.aggression";
+
+    private static final DynamicLongProperty slowStartWindow = DynamicPropertyFactory.getInstance().getLongProperty(SLOW_START_WINDOW_IN_MILLIS, 0);
+    private static final DynamicDoubleProperty slowStartMinWeight = DynamicPropertyFactory.getInstance().getDoubleProperty(SLOW_START_MIN_WEIGHT, 0.1);
+    private static final DynamicDoubleProperty slowStartAggression = DynamicPropertyFactory.getInstance().getDoubleProperty(SLOW_START_AGGRESSION, 1.0);
+
+    /**
+     * The states of a server instance's circuit breaker.
+     */
+    public enum CircuitBreakerState {
+        /** taking full traffic */
+        CLOSED,
+        /** short-circuited, taking no traffic */
+        OPEN,
+        /** recovering, only taking probe traffic */
+        HALF_OPEN
+    }
 
     private boolean isSecure;
-    private boolean available;
+    private volatile boolean available;
+    private volatile boolean healthy = true;
     private boolean lastAvailable;
+    private boolean lastHalfOpen;
     private String serviceName;
     private String id;
     private String host;
@@ -49,12 +97,24 @@ public class ServerInstance {
     private int websocketPort;
     private String url;
 
-    private ServerInstanceListener listener;
+    private volatile ServerInstanceListener listener;
+    private final List<ServerInstanceListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile JanusClock clock = JanusClock.system();
 
-    private volatile boolean shortCircuited;
-    private volatile long shortCircuitExpiration;
+    private volatile CircuitBreakerState circuitBreakerState = CircuitBreakerState.CLOSED;
+    // far enough in the past that a first trip is never taken for a repeated one
+    private volatile long shortCircuitExpiration = Long.MIN_VALUE / 2;
     private volatile long shortCircuitCount;
 
+    // start of the slow start window
+    private volatile long warmupStartTime = clock.millis();
+    private volatile boolean warmingUp = true;
+
+    // half-open probe tracking, guarded by this
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long lastProbeTime;
+
     /**
      *
      * @param serviceName the name of the service cluster
@@ -104,14 +164,7 @@ public class ServerInstance {
      * @return false of the server should be removed, true otherwise
      */
     public boolean tick() {
-        // notify listener if availability has changed
-        boolean currentlyAvailable = isAvailable();
-        if (currentlyAvailable != lastAvailable) {
-            lastAvailable = currentlyAvailable;
-            if (listener != null) {
-                listener.onAvailabilityChange(currentlyAvailable);
-            }
-        }
+        checkAvailability();
         return !isExpired();
     }
 
@@ -131,13 +184,85 @@ public class ServerInstance {
         this.listener = listener;
     }
 
+    /**
+     * add a listener, in addition to the one set by setListener(), e.g. for each {@link Janus} instance sharing
+     * this instance through the same {@link com.kixeye.janus.serverlist.ServerList}
+     * @param listener a {@link ServerInstanceListener} that will get notified of server availability change.
+     */
+    void addListener(ServerInstanceListener listener) {
+        listeners.add(Preconditions.checkNotNull(listener, "'listener' cannot be null."));
+    }
+
+    /**
+     * remove a listener added by addListener()
+     * @param listener the {@link ServerInstanceListener} to remove
+     */
+    void removeListener(ServerInstanceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * are any listeners added by addListener()?
+     * @return true if the instance is tracked by a {@link Janus} instance
+     */
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * getter for clock
+     * @return the {@link JanusClock} used by the instance
+     */
+    public JanusClock getClock() {
+        return clock;
+    }
+
+    /**
+     * setter for clock. restarts the slow start window, as times from the previous clock are meaningless.
+     * @param clock the {@link JanusClock} to use
+     */
+    public void setClock(JanusClock clock) {
+        Preconditions.checkNotNull(clock, "'clock' cannot be null.");
+        if (this.clock != clock) {
+            this.clock = clock;
+            startWarmup();
+        }
+    }
+
     /**
      * Is this instance available to service requests?
      *
      * @return isAvailable
      */
     public boolean isAvailable() {
-        return !isExpired() && !isShortCircuited() && available;
+        return !isExpired() && !isShortCircuited() && circuitBreakerState == CircuitBreakerState.CLOSED && available && healthy;
+    }
+
+    /**
+     * Is this instance available according to discovery (and health checks), regardless of its circuit breaker?
+     *
+     * @return whether or not the server instance is up
+     */
+    public boolean isUp() {
+        return !isExpired() && available && healthy;
+    }
+
+    /**
+     * Is this instance available according to discovery, regardless of its health checks and circuit breaker?
+     *
+     * @return the availability last set by {@link #setAvailable(boolean)}
+     */
+    public boolean isDiscoveryAvailable() {
+        return available;
+    }
+
+    /**
+     * Is this instance passing its health checks? Always true unless a {@link HealthChecker} is checking it.
+     *
+     * @return whether or not the server instance is healthy
+     */
+    public boolean isHealthy() {
+        return healthy;
     }
 
     /**
@@ -146,13 +271,111 @@ public class ServerInstance {
      * @return whether or not the server instance is currently short-circuited
      */
     public boolean isShortCircuited() {
-        if (shortCircuited) {
-            long delta = System.currentTimeMillis() - shortCircuitExpiration;
+        if (circuitBreakerState == CircuitBreakerState.OPEN) {
+            long delta = clock.millis() - shortCircuitExpiration;
             if (delta >= 0) {
-                shortCircuited = false;
+                halfOpen();
             }
         }
-        return shortCircuited;
+        return circuitBreakerState == CircuitBreakerState.OPEN;
+    }
+
+    /**
+     * Is this instance's circuit breaker half-open, i.e. only taking probe requests?
+     *
+     * @return whether or not the server instance is half-open
+     */
+    public boolean isHalfOpen() {
+        return !isShortCircuited() && circuitBreakerState == CircuitBreakerState.HALF_OPEN;
+    }
+
+    /**
+     * Get the state of this instance's circuit breaker.
+     *
+     * @return the circuit breaker state
+     */
+    public CircuitBreakerState getCircuitBreakerState() {
+        isShortCircuited();
+        return circuitBreakerState;
+    }
+
+    /**
+     * Try to send a probe request to this half-open instance.
+     *
+     * @return true if a probe request may be sent, false if the instance is not half-open or already has the maximum number of probes in flight
+     */
+    public synchronized boolean tryAcquireProbe() {
+        if (!available || !healthy || isExpired() || !isHalfOpen()) {
+            return false;
+        }
+        long now = clock.millis();
+        if (probesInFlight > 0 && now - lastProbeTime >= probeTimeout.get()) {
+            // outcomes of earlier probes were never reported
+            probesInFlight = 0;
+        }
+        if (probesInFlight >= halfOpenMaxProbes.get()) {
+            return false;
+        }
+        probesInFlight++;
+        lastProbeTime = now;
+        return true;
+    }
+
+    /**
+     * Record a successful request to this instance. Closes the circuit breaker once enough probes
+     * have succeeded while half-open.
+     */
+    public void recordSuccess() {
+        if (circuitBreakerState != CircuitBreakerState.HALF_OPEN) {
+            return;
+        }
+        synchronized (this) {
+            if (circuitBreakerState != CircuitBreakerState.HALF_OPEN) {
+                return;
+            }
+            probesInFlight = Math.max(probesInFlight - 1, 0);
+            if (++probeSuccesses >= halfOpenSuccessThreshold.get()) {
+                circuitBreakerState = CircuitBreakerState.CLOSED;
+                startWarmup();
+            }
+        }
+        checkAvailability();
+    }
+
+    /**
+     * Get the weight with which load balancers should select this instance relative to the others, which is
+     * below 1.0 while the instance is slow started.
+     *
+     * @return the selection weight
+     */
+    public double getWeight() {
+        if (!warmingUp || slowStartWindow.get() <= 0) {
+            return 1.0;
+        }
+        double factor = getSlowStartFactor(clock.millis());
+        if (factor >= 1.0) {
+            // done warming up, stop reading the clock
+            warmingUp = false;
+        }
+        return factor;
+    }
+
+    /**
+     * Get the fraction of its full weight this instance has reached in its slow start window.
+     *
+     * @param now the current time (in millis)
+     * @return the slow start factor, between "janus.slowStart.minWeight" and 1.0
+     */
+    double getSlowStartFactor(long now) {
+        long window = slowStartWindow.get();
+        long elapsed = now - warmupStartTime;
+        if (window <= 0 || elapsed >= window) {
+            return 1.0;
+        }
+        double progress = Math.max(elapsed, 0) / (double) window;
+        double aggression = slowStartAggression.get();
+        double factor = (aggression == 1.0 || aggression <= 0) ? progress : Math.pow(progress, 1.0 / aggression);
+        return Math.min(Math.max(factor, slowStartMinWeight.get()), 1.0);
     }
 
     /**
@@ -178,7 +401,24 @@ public class ServerInstance {
      * @param isAvailable available or not?
      */
     public void setAvailable(boolean isAvailable) {
-        available = isAvailable;
+        if (available != isAvailable) {
+            available = isAvailable;
+            checkAvailability();
+        }
+    }
+
+    /**
+     * setter for healthy
+     * @param isHealthy passing health checks or not?
+     */
+    public void setHealthy(boolean isHealthy) {
+        if (healthy != isHealthy) {
+            if (isHealthy) {
+                startWarmup();
+            }
+            healthy = isHealthy;
+            checkAvailability();
+        }
     }
 
     /**
@@ -187,7 +427,7 @@ public class ServerInstance {
      * exponentially.
      */
     public void tripCircuitBreaker() {
-        final long now = System.currentTimeMillis();
+        final long now = clock.millis();
 
         // increment short circuit count for back off calculation
         if ((now - shortCircuitExpiration) > shortCircuitDuration.get()) {
@@ -198,8 +438,13 @@ public class ServerInstance {
 
         // set time out using exponential back off
         long timeout = (long) (Math.pow(1.5, shortCircuitCount) * shortCircuitDuration.get());
-        shortCircuitExpiration = now + timeout;
-        shortCircuited = true;
+        synchronized (this) {
+            shortCircuitExpiration = now + timeout;
+            circuitBreakerState = CircuitBreakerState.OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        checkAvailability();
     }
 
     /**
@@ -209,7 +454,7 @@ public class ServerInstance {
      */
     public double getCircuitBreakerRemainingTime() {
         if (isShortCircuited()) {
-            long delta = shortCircuitExpiration - System.currentTimeMillis();
+            long delta = shortCircuitExpiration - clock.millis();
             if (delta > 0) {
                 return delta / 1000.0;
             }
@@ -217,6 +462,23 @@ public class ServerInstance {
         return 0.0;
     }
 
+    /**
+     * Get the time (in millis) at which the server instance's circuit breaker
+     * will no longer be tripped. Only meaningful while short-circuited.
+     * @return the short circuit expiration time
+     */
+    long getShortCircuitExpiration() {
+        return shortCircuitExpiration;
+    }
+
+    /**
+     * getter for serviceName
+     * @return serviceName
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
     /**
      * getter for id
      * @return id
@@ -285,6 +547,54 @@ public class ServerInstance {
         return true;
     }
 
+    /**
+     * restart the slow start window
+     */
+    private void startWarmup() {
+        warmupStartTime = clock.millis();
+        warmingUp = true;
+    }
+
+    /**
+     * move an open circuit breaker whose short circuit has expired to half-open
+     */
+    private void halfOpen() {
+        synchronized (this) {
+            if (circuitBreakerState != CircuitBreakerState.OPEN || clock.millis() - shortCircuitExpiration < 0) {
+                return;
+            }
+            circuitBreakerState = CircuitBreakerState.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        checkAvailability();
+    }
+
+    /**
+     * notify the listeners if availability (or whether the instance is half-open) has changed since the last notification.
+     * the change is detected under the instance's lock, but the listeners are called after releasing it
+     */
+    private void checkAvailability() {
+        boolean currentlyAvailable;
+        synchronized (this) {
+            currentlyAvailable = isAvailable();
+            boolean currentlyHalfOpen = circuitBreakerState == CircuitBreakerState.HALF_OPEN;
+            if (currentlyAvailable == lastAvailable && currentlyHalfOpen == lastHalfOpen) {
+                return;
+            }
+            lastAvailable = currentlyAvailable;
+            lastHalfOpen = currentlyHalfOpen;
+        }
+
+        ServerInstanceListener listener = this.listener;
+        if (listener != null) {
+            listener.onAvailabilityChange(currentlyAvailable);
+        }
+        for (ServerInstanceListener l : listeners) {
+            l.onAvailabilityChange(currentlyAvailable);
+        }
+    }
+
     private void initialize(String serviceName, String id, String host, boolean isSecure, int port, int websocketPort) {
         this.serviceName = serviceName;
         this.host = host;
@@ -27,7 +27,9 @@ package com.kixeye.janus;
 interface ServerInstanceListener {
 
     /**
-     * called when a server instance's availability changes.
+     * called when a server instance's availability changes, or its circuit breaker enters or leaves the half-open state.
+     * called without holding the server instance's lock, so the notifications of changes in quick succession can arrive
+     * out of order; read the current state of the server instance rather than relying on the given one.
      *
      * @param isAvailable availability state of the server instance
      */
@@ -21,18 +21,23 @@ package com.kixeye.janus;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import com.codahale.metrics.*;
 import com.google.common.base.Preconditions;
-import com.netflix.config.DynamicLongProperty;
-import com.netflix.config.DynamicPropertyFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  *  The default {@link ServerStats} implementation used by Janus
+ *  <p/>
+ *  Metrics are registered as "{service cluster name}.{server instance id}.{metric}", so the number of registered metrics
+ *  tracks the live server instances, and are removed from the {@link MetricRegistry} by {@link #removeMetrics()} when
+ *  the server instance is removed. If the same server instance is tracked more than once against the same registry,
+ *  e.g. by two {@link Janus} instances of one service, the counters, meters and histograms are shared, and the gauges
+ *  of the first are reported until it is removed.
  *
  *  @see ServerStats
  *
@@ -41,8 +46,6 @@ import org.slf4j.LoggerFactory;
 public class ServerStats {
     private final Logger logger = LoggerFactory.getLogger(ServerStats.class);
 
-    protected final DynamicLongProperty propErrorThreshold = DynamicPropertyFactory.getInstance().getLongProperty("janus.errorThresholdPerSec", 10);
-
     protected MetricRegistry metrics;
     protected ServerInstance server;
 
@@ -55,11 +58,21 @@ public class ServerStats {
     protected Counter circuitBreakerTrippedCounter;
     protected Gauge<Double> circuitBreakerTimeGauge;
     protected Histogram latencyHistogram;
-    
-    protected String objectId = UUID.randomUUID().toString();
+    // created along with the server instance, see createLatencyRecorder() and createPeakEwma()
+    protected LatencyRecorder latencyRecorder;
+    protected PeakEwma peakEwma;
+
+    // the metrics registered by this instance, by name
+    private final Map<String, Metric> registeredMetrics = new ConcurrentHashMap<>();
 
-    // internal metric tracking
-    protected SlidingTimeWindowReservoir errorsPerSecond;
+    // decides when to short circuit the server
+    protected CircuitBreakerPolicy circuitBreakerPolicy = new ErrorRateCircuitBreakerPolicy();
+
+    // outcome totals, read by the OutlierDetector
+    private final StripedCounter successCount = new StripedCounter();
+    private final StripedCounter errorCount = new StripedCounter();
+    private final StripedCounter latencyCount = new StripedCounter();
+    private final StripedCounter latencyTotalNanos = new StripedCounter();
 
     /**
      *
@@ -67,13 +80,13 @@ public class ServerStats {
      */
     public void setMetricRegistry(MetricRegistry metricRegistry) {
         this.metrics = Preconditions.checkNotNull(metricRegistry, "'metricRegistry' cannot be null.");
-        this.openRequestCounter = metrics.counter(name(server.getId(), "open-requests"));
-        this.openSessionsCounter = metrics.counter(name(server.getId(), "open-sessions"));
-        this.sentMessageMeter = metrics.meter(name(server.getId(), "sent-messages"));
-        this.receivedMessageMeter = metrics.meter(name(server.getId(), "received-messages"));
-        this.errorMeter = metrics.meter(name(server.getId(), "errors"));
-        this.circuitBreakerTrippedCounter = metrics.counter(name(server.getId(),"short-circuit-tripped"));
-        this.circuitBreakerTimeGauge = new Gauge<Double>() {
+        this.openRequestCounter = register("open-requests", new Counter());
+        this.openSessionsCounter = register("open-sessions", new Counter());
+        this.sentMessageMeter = register("sent-messages", new Meter());
+        this.receivedMessageMeter = register("received-messages", new Meter());
+        this.errorMeter = register("errors", new Meter());
+        this.circuitBreakerTrippedCounter = register("short-circuit-tripped", new Counter());
+        this.circuitBreakerTimeGauge = register("short-circuit-time-remaining", new Gauge<Double>() {
             @Override
             public Double getValue() {
                 if (server != null) {
@@ -82,27 +95,115 @@ public class ServerStats {
                     return 0.0;
                 }
             }
-        };
-        this.metrics.register(name(objectId, server.getId(),"short-circuit-time-remaining"), circuitBreakerTimeGauge);
-        this.latencyHistogram = new Histogram( new SlidingWindowReservoir(100) );
-        this.metrics.register(name(objectId, server.getId(), "latency"), this.latencyHistogram);
-
-        // internal metrics
-        this.errorsPerSecond = new SlidingTimeWindowReservoir(1, TimeUnit.SECONDS, new Clock() {
-            private long start = System.nanoTime();
+        });
+        this.latencyHistogram = register("latency", new Histogram( new SlidingWindowReservoir(100) ));
+        registerLatencyPercentiles();
+    }
+
+    /**
+     * Register gauges for the nanosecond latency percentiles tracked by the {@link LatencyRecorder}.
+     */
+    protected void registerLatencyPercentiles() {
+        register("latency-p50-nanos", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return latencyRecorder.getP50();
+            }
+        });
+        register("latency-p99-nanos", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return latencyRecorder.getP99();
+            }
+        });
+        register("latency-p999-nanos", new Gauge<Long>() {
             @Override
-            public long getTick() {
-                return System.nanoTime() - start;
+            public Long getValue() {
+                return latencyRecorder.getP999();
             }
         });
     }
 
+    /**
+     * Register a metric for the server instance in the {@link MetricRegistry}, named "{service cluster name}.{server instance id}.{metric}".
+     * If another {@link ServerStats} of the same server instance already registered a counter, meter or histogram with
+     * the same name, that metric is shared and returned instead.
+     *
+     * @param metricName the name of the metric
+     * @param metric the metric
+     * @return the metric to update
+     */
+    protected <T extends Metric> T register(String metricName, T metric) {
+        String fullName = name(server.getServiceName(), server.getId(), metricName);
+        try {
+            T registered = SharedMetrics.register(metrics, fullName, metric);
+            registeredMetrics.put(fullName, registered);
+            return registered;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Metric {} is already registered by something else, not reporting it for this instance.", fullName);
+            return metric;
+        }
+    }
+
+    /**
+     * Remove all metrics registered for the server instance from the {@link MetricRegistry}. Called when
+     * the server instance is no longer tracked.
+     */
+    public void removeMetrics() {
+        if (metrics == null) {
+            return;
+        }
+        for (Map.Entry<String, Metric> entry : registeredMetrics.entrySet()) {
+            SharedMetrics.release(metrics, entry.getKey(), entry.getValue());
+        }
+        registeredMetrics.clear();
+    }
+
+    /**
+     * setter for circuitBreakerPolicy
+     * @param circuitBreakerPolicy the {@link CircuitBreakerPolicy} deciding when to short circuit the server instance
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = Preconditions.checkNotNull(circuitBreakerPolicy, "'circuitBreakerPolicy' cannot be null.");
+    }
+
+    /**
+     * getter for circuitBreakerPolicy
+     * @return the circuitBreakerPolicy
+     */
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
     /**
      * setter for serverInstance
      * @param serverInstance the serverInstance
      */
     public void setServerInstance(ServerInstance serverInstance) {
         this.server = serverInstance;
+        this.latencyRecorder = createLatencyRecorder(serverInstance.getClock());
+        if (peakEwma == null) {
+            peakEwma = createPeakEwma();
+        }
+    }
+
+    /**
+     * create the {@link LatencyRecorder} tracking the latency percentiles of the server instance. sub-classes which
+     * don't record percentiles can return a shared one instead of paying for a histogram per server instance
+     * @param clock the server instance's {@link JanusClock}
+     * @return the {@link LatencyRecorder}
+     */
+    protected LatencyRecorder createLatencyRecorder(JanusClock clock) {
+        return new LatencyRecorder(clock);
+    }
+
+    /**
+     * create the {@link PeakEwma} tracking the moving average of the latency of the server instance. sub-classes which
+     * don't record it can return a shared one
+     * @return the {@link PeakEwma}
+     */
+    protected PeakEwma createPeakEwma() {
+        return new PeakEwma();
     }
 
     /**
@@ -135,10 +236,76 @@ public class ServerStats {
     }
 
     /**
-     * record the amount of latency for a request/message to a server instance by a {@link Janus} instance
+     * record the amount of latency for a request/message to a server instance by a {@link Janus} instance. the outcome
+     * is recorded separately, by {@link #recordSuccess()} or {@link #incrementErrors()}
      */
     public void recordLatency(long latencyInMs) {
         latencyHistogram.update(latencyInMs);
+        long latencyInNanos = TimeUnit.MILLISECONDS.toNanos(latencyInMs);
+        recordLatencyTotal(latencyInNanos);
+        latencyRecorder.record(latencyInNanos);
+        peakEwma.record(latencyInNanos, server.getClock().nanoTime());
+    }
+
+    /**
+     * record the amount of latency, with nanosecond resolution, for a request/message to a server instance by a {@link Janus} instance
+     */
+    public void recordLatencyNanos(long latencyInNanos) {
+        recordLatencyNanos(latencyInNanos, server.getClock().nanoTime());
+    }
+
+    /**
+     * record the amount of latency, with nanosecond resolution, for a request/message to a server instance by a {@link Janus} instance,
+     * for callers which already read the time the request/message completed
+     * @param latencyInNanos the latency (in nanos)
+     * @param nanoTime the time the request/message completed, from the server instance's {@link JanusClock}
+     */
+    public void recordLatencyNanos(long latencyInNanos, long nanoTime) {
+        latencyHistogram.update(TimeUnit.NANOSECONDS.toMillis(latencyInNanos));
+        recordLatencyTotal(latencyInNanos);
+        latencyRecorder.record(latencyInNanos);
+        peakEwma.record(latencyInNanos, nanoTime);
+    }
+
+    /**
+     * add a request/message to the latency totals
+     * @param latencyInNanos the latency (in nanos)
+     */
+    protected void recordLatencyTotal(long latencyInNanos) {
+        latencyCount.increment();
+        latencyTotalNanos.add(latencyInNanos);
+    }
+
+    /**
+     * get the total number of latencies recorded for the server instance
+     * @return the number of latencies
+     */
+    public long getLatencyCount() {
+        return latencyCount.sum();
+    }
+
+    /**
+     * get the sum of all latencies recorded for the server instance
+     * @return the total latency (in nanos)
+     */
+    public long getLatencyTotalNanos() {
+        return latencyTotalNanos.sum();
+    }
+
+    /**
+     * get the nanosecond resolution latency percentiles of a server instance
+     * @return the {@link LatencyRecorder}
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * get the peak sensitive moving average of the latency of a server instance
+     * @return the {@link PeakEwma}
+     */
+    public PeakEwma getPeakEwma() {
+        return peakEwma;
     }
 
     /**
@@ -167,15 +334,86 @@ public class ServerStats {
      */
     public void incrementErrors() {
         errorMeter.mark();
-        errorsPerSecond.update(1);
+        if (recordError()) {
+            circuitBreakerTrippedCounter.inc();
+        }
+    }
+
+    /**
+     * eject the server instance as an outlier (see {@link OutlierDetector}), tripping its circuit breaker
+     */
+    public void ejectOutlier() {
+        recordEjection();
+        circuitBreakerTrippedCounter.inc();
+    }
+
+    /**
+     * record a successful request/message with the {@link CircuitBreakerPolicy} and the server instance's circuit breaker.
+     * only call this once the request/message is known to have succeeded, since a success closes a half-open circuit breaker
+     */
+    public void recordSuccess() {
+        recordSuccess(server.getClock().nanoTime());
+    }
+
+    /**
+     * record a successful request/message with the {@link CircuitBreakerPolicy} and the server instance's circuit breaker
+     * @param nanoTime the time of the success, from the server instance's {@link JanusClock}
+     */
+    public void recordSuccess(long nanoTime) {
+        successCount.increment();
+        circuitBreakerPolicy.recordSuccess(nanoTime);
+        server.recordSuccess();
+    }
+
+    /**
+     * record an error with the {@link CircuitBreakerPolicy}, short circuiting the server instance if the policy says so
+     * @return true if the server instance was short circuited, false otherwise
+     */
+    protected boolean recordError() {
+        errorCount.increment();
+
+        // a failed probe re-opens the circuit breaker straight away
+        if (server.isHalfOpen()) {
+            logger.warn("Short circuiting <{},{}> again because a probe request failed", getServerInstance().getId(), getServerInstance().getHost());
+            tripCircuitBreaker();
+            return true;
+        }
 
         // should we short circuit the server?
-        int errorCount = errorsPerSecond.size();
-        if ( errorCount >= propErrorThreshold.get()) {
-            logger.warn("Short circuiting <{},{}> because too many errors <{}>", getServerInstance().getId(), getServerInstance().getHost(), errorCount);
-            circuitBreakerTrippedCounter.inc();
-            server.tripCircuitBreaker();
+        if (circuitBreakerPolicy.recordError(server.getClock().nanoTime())) {
+            logger.warn("Short circuiting <{},{}> because too many errors", getServerInstance().getId(), getServerInstance().getHost());
+            tripCircuitBreaker();
+            return true;
         }
+        return false;
+    }
+
+    /**
+     * trip the circuit breaker of an outlier, resetting the {@link CircuitBreakerPolicy} as for any other trip
+     */
+    protected void recordEjection() {
+        tripCircuitBreaker();
+    }
+
+    /**
+     * get the total number of successful requests/messages recorded for the server instance
+     * @return the number of successes
+     */
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    /**
+     * get the total number of errors recorded for the server instance
+     * @return the number of errors
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    private void tripCircuitBreaker() {
+        server.tripCircuitBreaker();
+        circuitBreakerPolicy.reset();
     }
 
     /**
@@ -198,6 +436,7 @@ public class ServerStats {
      */
     public void incrementReceivedMessages() {
         receivedMessageMeter.mark();
+        recordSuccess();
     }
 
     /**
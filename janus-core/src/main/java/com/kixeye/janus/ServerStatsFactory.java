@@ -35,10 +35,21 @@ public class ServerStatsFactory implements StatsFactory{
 
     private MetricRegistry metricRegistry;
     private Class<? extends ServerStats> typeArgumentClass;
+    private Class<? extends CircuitBreakerPolicy> circuitBreakerPolicyClass;
 
     public ServerStatsFactory(Class<? extends ServerStats> typeArgumentClass, MetricRegistry metricRegistry) {
+        this(typeArgumentClass, metricRegistry, ErrorRateCircuitBreakerPolicy.class);
+    }
+
+    /**
+     * @param typeArgumentClass the {@link ServerStats} class to create
+     * @param metricRegistry registry containing the metrics
+     * @param circuitBreakerPolicyClass the {@link CircuitBreakerPolicy} class to create for each {@link ServerStats}
+     */
+    public ServerStatsFactory(Class<? extends ServerStats> typeArgumentClass, MetricRegistry metricRegistry, Class<? extends CircuitBreakerPolicy> circuitBreakerPolicyClass) {
         this.typeArgumentClass = typeArgumentClass;
         this.metricRegistry = metricRegistry;
+        this.circuitBreakerPolicyClass = Preconditions.checkNotNull(circuitBreakerPolicyClass, "'circuitBreakerPolicyClass' cannot be null.");
     }
 
     public ServerStats createServerStats(ServerInstance serverInstance) {
@@ -47,6 +58,7 @@ public class ServerStatsFactory implements StatsFactory{
         try {
             ServerStats stat = typeArgumentClass.newInstance();
             stat.setServerInstance(serverInstance);
+            stat.setCircuitBreakerPolicy(circuitBreakerPolicyClass.newInstance());
             stat.setMetricRegistry(metricRegistry);
             return stat;
         } catch (Exception e) {
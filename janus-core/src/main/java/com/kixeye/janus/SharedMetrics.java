@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Shares metric names between the {@link ServerStats} of the same server instance, e.g. when two {@link Janus}
+ * instances of one service report to the same {@link MetricRegistry}.
+ * <p/>
+ * Counters, meters and histograms are shared, like {@link MetricRegistry#counter(String)} does, so the reported
+ * values cover every {@link ServerStats} of the server instance. Gauges read the state of the {@link ServerStats}
+ * which created them, so only one is reported at a time and the next one takes over when it is removed. A name
+ * is removed from the registry once the last {@link ServerStats} using it releases it.
+ */
+class SharedMetrics {
+    // guarded by itself
+    private static final Map<MetricRegistry, Map<String, List<Metric>>> holders = new WeakHashMap<>();
+
+    private SharedMetrics() {
+    }
+
+    /**
+     * register a metric under the given name, or join the metric already registered under it
+     * @param registry the registry
+     * @param name the full name of the metric
+     * @param metric the metric of the caller
+     * @return the metric to update, which is the one already registered if it is shared
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Metric> T register(MetricRegistry registry, String name, T metric) {
+        synchronized (holders) {
+            List<Metric> users = getUsers(registry, name);
+            if (users.isEmpty()) {
+                registry.register(name, metric);
+            } else if (!(metric instanceof Gauge) && users.get(0).getClass() == metric.getClass()) {
+                metric = (T) users.get(0);
+            }
+            users.add(metric);
+            return metric;
+        }
+    }
+
+    /**
+     * release a metric returned by {@link #register(MetricRegistry, String, Metric)}
+     * @param registry the registry
+     * @param name the full name of the metric
+     * @param metric the metric returned when registering
+     */
+    static void release(MetricRegistry registry, String name, Metric metric) {
+        synchronized (holders) {
+            List<Metric> users = getUsers(registry, name);
+            Metric reported = users.isEmpty() ? null : users.get(0);
+            for (int i = 0; i < users.size(); i++) {
+                if (users.get(i) == metric) {
+                    users.remove(i);
+                    break;
+                }
+            }
+            if (users.isEmpty()) {
+                holders.get(registry).remove(name);
+                registry.remove(name);
+            } else if (users.get(0) != reported) {
+                // hand the name over to the next user
+                registry.remove(name);
+                registry.register(name, users.get(0));
+            }
+        }
+    }
+
+    private static List<Metric> getUsers(MetricRegistry registry, String name) {
+        Map<String, List<Metric>> names = holders.get(registry);
+        if (names == null) {
+            names = new HashMap<>();
+            holders.put(registry, names);
+        }
+        List<Metric> users = names.get(name);
+        if (users == null) {
+            users = new ArrayList<>(1);
+            names.put(name, users);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which spreads concurrent updates over several padded cells, so that threads updating the
+ * same counter rarely contend on the same cache line. Reads sum all cells and are comparatively slow,
+ * which suits counters that are updated on every request but only read when choosing or reporting.
+ */
+class StripedCounter {
+    // one cell per 64 byte cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * add the given value to the counter
+     * @param x the value to add
+     */
+    void add(long x) {
+        cells.getAndAdd(index(), x);
+    }
+
+    /**
+     * increment the counter
+     */
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * decrement the counter
+     */
+    void decrement() {
+        add(-1);
+    }
+
+    /**
+     * get the current value of the counter, not atomic with respect to concurrent updates
+     * @return the sum of all cells
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Limits a client to a subset of the server instances of a service cluster, so that with many clients and many server
+ * instances each server instance only holds connections from some of the clients rather than all of them.
+ * <p/>
+ * The subset is chosen by rendezvous hashing: every server instance which is up gets a pseudo random score from its
+ * instance id and the client id, and the highest scoring ones make up the subset. The subset is therefore the same
+ * every time for the same client id, spreads the clients evenly (on average) over the server instances, and only
+ * changes by the server instances which come or go, or fail their health checks. The circuit breakers of the subset
+ * then work as usual, and panic mode (see {@link Janus#PANIC_THRESHOLD}) spreads the load over the whole subset.
+ * <p/>
+ * Outlier detection only compares the server instances of the subset, and health checks only run against the subset,
+ * the higher scoring server instances which are down (to notice them coming back), and as many standby server instances
+ * as half the subset (at least one), so that a server instance of the subset which fails is replaced by one known to be
+ * healthy. Server instances awaiting their first check count towards those, so server instances beyond them are not
+ * checked at all, even when they are first discovered.
+ * <p/>
+ * Requests/messages routed by key only land on the same server instance for the same client, since every client
+ * routes within its own subset.
+ * <p/>
+ * The size of the subset can be configured by setting/updating the property "janus.serviceName.{service name}.subsetSize".
+ * A size of 0 (or more than the number of server instances) uses all server instances. Changes take effect the next time
+ * the available server instances change.
+ */
+public class Subsetter {
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    private final DynamicIntProperty subsetSize;
+    private final long clientHash;
+
+    /**
+     * Creates a subsetter identifying this client by its JVM (process id and host name).
+     *
+     * @param serviceName the service cluster name
+     * @param defaultSubsetSize the number of server instances to use unless configured otherwise
+     */
+    public Subsetter(String serviceName, int defaultSubsetSize) {
+        this(serviceName, defaultSubsetSize, ManagementFactory.getRuntimeMXBean().getName());
+    }
+
+    /**
+     * @param serviceName the service cluster name
+     * @param defaultSubsetSize the number of server instances to use unless configured otherwise
+     * @param clientId an id unique to this client, ideally stable across restarts
+     */
+    public Subsetter(String serviceName, int defaultSubsetSize, String clientId) {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(serviceName), "'serviceName' cannot be null or empty.");
+        Preconditions.checkArgument(defaultSubsetSize >= 0, "'defaultSubsetSize' must be >= 0");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(clientId), "'clientId' cannot be null or empty.");
+        this.subsetSize = DynamicPropertyFactory.getInstance().getIntProperty("janus.serviceName." + serviceName + ".subsetSize", defaultSubsetSize);
+        this.clientHash = hash(clientId);
+    }
+
+    /**
+     * get the number of server instances in the subset
+     * @return the subset size, 0 for all server instances
+     */
+    public int getSubsetSize() {
+        return subsetSize.get();
+    }
+
+    /**
+     * select the subset of the given server instances for this client
+     * @param servers the server instances of the service cluster
+     * @return the server instances to use
+     */
+    public Collection<ServerStats> select(Collection<ServerStats> servers) {
+        int size = getSubsetSize();
+        if (size <= 0 || servers.size() <= size) {
+            return servers;
+        }
+
+        List<Score> scores = score(servers, true);
+        if (scores.size() <= size) {
+            // not enough server instances up to choose from, keep the ones which are down in sight too
+            return servers;
+        }
+
+        List<ServerStats> subset = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            subset.add(scores.get(i).stat);
+        }
+        return subset;
+    }
+
+    /**
+     * select the server instances to health check: the subset, the server instances which score higher than some of
+     * the subset but are down, and standby server instances to replace those of the subset which fail
+     * @param servers the server instances of the service cluster
+     * @return the server instances to health check
+     */
+    public Collection<ServerStats> selectForHealthChecks(Collection<ServerStats> servers) {
+        return selectForHealthChecks(servers, Predicates.<ServerInstance>alwaysFalse());
+    }
+
+    /**
+     * select the server instances to health check, as {@link #selectForHealthChecks(Collection)}, counting those awaiting
+     * their first check as if they were up
+     * @param servers the server instances of the service cluster
+     * @param pending whether a server instance is awaiting its first check
+     * @return the server instances to health check
+     */
+    public Collection<ServerStats> selectForHealthChecks(Collection<ServerStats> servers, Predicate<ServerInstance> pending) {
+        Preconditions.checkNotNull(pending, "'pending' cannot be null.");
+        int size = getSubsetSize();
+        int wanted = size + Math.max(1, size / 2);
+        if (size <= 0 || servers.size() <= wanted) {
+            return servers;
+        }
+
+        // everything down to the lowest scoring server instance which is up (or may turn out to be) and wanted
+        List<ServerStats> checked = new ArrayList<>(wanted);
+        int up = 0;
+        for (Score score : score(servers, false)) {
+            if (up >= wanted) {
+                break;
+            }
+            checked.add(score.stat);
+            ServerInstance instance = score.stat.getServerInstance();
+            if (instance.isUp() || pending.apply(instance)) {
+                up++;
+            }
+        }
+        return checked;
+    }
+
+    // the given server instances (only those which are up, if asked), highest scoring first
+    private List<Score> score(Collection<ServerStats> servers, boolean upOnly) {
+        List<Score> scores = new ArrayList<>(servers.size());
+        for (ServerStats stat : servers) {
+            ServerInstance instance = stat.getServerInstance();
+            if (!upOnly || instance.isUp()) {
+                scores.add(new Score(stat, mix(clientHash ^ hash(instance.getId()))));
+            }
+        }
+        Collections.sort(scores, Score.HIGHEST_FIRST);
+        return scores;
+    }
+
+    private static long hash(String value) {
+        return hashFunction.hashString(value, Charsets.UTF_8).asLong();
+    }
+
+    // the murmur3 finalizer, so every bit of the combined hashes affects the score
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The score of a server instance for this client.
+     */
+    private static class Score {
+        private static final Comparator<Score> HIGHEST_FIRST = new Comparator<Score>() {
+            @Override
+            public int compare(Score o1, Score o2) {
+                if (o1.score != o2.score) {
+                    return (o1.score > o2.score) ? -1 : 1;
+                }
+                return o1.stat.getServerInstance().getId().compareTo(o2.stat.getServerInstance().getId());
+            }
+        };
+
+        private final ServerStats stat;
+        private final long score;
+
+        private Score(ServerStats stat, long score) {
+            this.stat = stat;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.config.DynamicDoubleProperty;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * A {@link CircuitBreakerPolicy} which trips the circuit breaker when the ratio of successful requests/messages
+ * within a rolling window drops below a minimum, so that it scales with the traffic sent to the server instance.
+ * <p/>
+ * The circuit breaker only trips once the window holds a minimum number of requests, so that a handful of errors
+ * at low traffic does not trip it. The window is 10 seconds, and the minimum success ratio (defaults to 0.5) and
+ * minimum number of requests (defaults to 20) can be configured by setting/updating the properties
+ * "janus.circuitBreaker.minSuccessRatio" and "janus.circuitBreaker.minRequests".
+ */
+public class SuccessRatioCircuitBreakerPolicy implements CircuitBreakerPolicy {
+    public static final String MIN_SUCCESS_RATIO = "janus.circuitBreaker.minSuccessRatio";
+    public static final String MIN_REQUESTS = "janus.circuitBreaker.minRequests";
+
+    private static final DynamicDoubleProperty minSuccessRatio = DynamicPropertyFactory.getInstance().getDoubleProperty(MIN_SUCCESS_RATIO, 0.5);
+    private static final DynamicIntProperty minRequests = DynamicPropertyFactory.getInstance().getIntProperty(MIN_REQUESTS, 20);
+
+    private final RollingCounter requests = new RollingCounter(10, TimeUnit.SECONDS, 10);
+    private final RollingCounter errors = new RollingCounter(10, TimeUnit.SECONDS, 10);
+
+    @Override
+    public void recordSuccess(long nanoTime) {
+        requests.increment(nanoTime);
+    }
+
+    @Override
+    public boolean recordError(long nanoTime) {
+        long requestCount = requests.incrementAndSum(nanoTime);
+        long errorCount = errors.incrementAndSum(nanoTime);
+        if (requestCount < minRequests.get()) {
+            return false;
+        }
+        double successRatio = (double) (requestCount - errorCount) / requestCount;
+        return successRatio < minSuccessRatio.get();
+    }
+
+    @Override
+    public void reset() {
+        requests.reset();
+        errors.reset();
+    }
+}
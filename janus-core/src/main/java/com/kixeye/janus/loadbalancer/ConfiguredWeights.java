@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.serverlist.EurekaServerInstance;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Looks up the configured capacity of the server instances of a service cluster, for load balancers which send
+ * bigger server instances proportionally more traffic.
+ * <p/>
+ * A server instance's weight is a non-negative integer taken from
+ * <ul>
+ *     <li>the property "janus.serviceName.{service name}.weight.{instance id}", if set, otherwise</li>
+ *     <li>the "weight" field of its Eureka meta-data, if it is a {@link EurekaServerInstance}, otherwise</li>
+ *     <li>1.</li>
+ * </ul>
+ * Lookups read properties and parse meta-data, so load balancers should only do them when the servers change.
+ */
+public class ConfiguredWeights {
+    private static final Logger logger = LoggerFactory.getLogger(ConfiguredWeights.class);
+
+    public static final String WEIGHT_METADATA_KEY = "weight";
+
+    private final String serviceName;
+
+    /**
+     * @param serviceName the service cluster name
+     */
+    public ConfiguredWeights(String serviceName) {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(serviceName), "'serviceName' cannot be null or empty.");
+        this.serviceName = serviceName;
+    }
+
+    /**
+     * get the configured weight of a server instance
+     * @param instance the server instance
+     * @return the weight, >= 0
+     */
+    public int get(ServerInstance instance) {
+        int weight = DynamicPropertyFactory.getInstance().getIntProperty("janus.serviceName." + serviceName + ".weight." + instance.getId(), -1).get();
+        if (weight >= 0) {
+            return weight;
+        }
+        if (instance instanceof EurekaServerInstance && ((EurekaServerInstance) instance).getInstanceInfo() != null) {
+            Map<String, String> metadata = ((EurekaServerInstance) instance).getInstanceInfo().getMetadata();
+            String value = (metadata != null) ? metadata.get(WEIGHT_METADATA_KEY) : null;
+            if (value != null) {
+                try {
+                    return Math.max(Integer.parseInt(value.trim()), 0);
+                } catch (NumberFormatException e) {
+                    logger.error("Bad weight value <{}> for <{}>", value, instance.getId());
+                }
+            }
+        }
+        return 1;
+    }
+}
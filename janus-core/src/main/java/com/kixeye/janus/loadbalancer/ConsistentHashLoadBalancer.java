@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.kixeye.janus.ServerStats;
+import com.netflix.config.DynamicDoubleProperty;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicPropertyFactory;
+
+/**
+ * Routes keys to servers with a consistent hash ring, so that a key keeps landing on the same server and only the
+ * keys of servers which come or go move elsewhere. Each server is placed on the ring at a number of points (virtual
+ * nodes), hashed from its instance id, to spread keys evenly.
+ * <p/>
+ * Load is bounded: a server with more than a factor times the average number of open requests is skipped, and the key
+ * spills over to the next server along the ring, so a hot key can not overload a single server.
+ * <p/>
+ * The ring is updated when a different list of available servers is given, which {@link com.kixeye.janus.Janus} only does
+ * after a refresh or availability change. Only the points of servers which were added are hashed, the points of the
+ * remaining servers are kept. Requests/messages without a key go to the less loaded of two random servers
+ * (see {@link PowerOfTwoChoicesLoadBalancer}).
+ * <p/>
+ * The behaviour can be configured by setting/updating the properties
+ * <ul>
+ *     <li>"janus.consistentHash.virtualNodes" - points on the ring per server (defaults to 100)</li>
+ *     <li>"janus.consistentHash.loadFactor" - multiple of the average open requests a server may have (defaults to 1.25)</li>
+ * </ul>
+ */
+public class ConsistentHashLoadBalancer implements KeyedLoadBalancer {
+    public static final String VIRTUAL_NODES = "janus.consistentHash.virtualNodes";
+    public static final String LOAD_FACTOR = "janus.consistentHash.loadFactor";
+
+    private static final DynamicIntProperty virtualNodes = DynamicPropertyFactory.getInstance().getIntProperty(VIRTUAL_NODES, 100);
+    private static final DynamicDoubleProperty loadFactor = DynamicPropertyFactory.getInstance().getDoubleProperty(LOAD_FACTOR, 1.25);
+
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    private final LoadBalancer unkeyed = new PowerOfTwoChoicesLoadBalancer();
+    private volatile Ring ring = new Ring(null, new long[0], new ServerStats[0], 0);
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the less loaded of two randomly picked {@link com.kixeye.janus.ServerStats}
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        return unkeyed.choose(availableServerStats);
+    }
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @param key the routing key
+     * @return the first {@link com.kixeye.janus.ServerStats} along the ring from the key which is not overloaded
+     * @see {@link KeyedLoadBalancer#choose(java.util.List, String)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats, String key) {
+        int size = availableServerStats.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return availableServerStats.get(0);
+        }
+        Ring current = ring;
+        if (current.servers != availableServerStats) {
+            // racing threads build equivalent rings, so whichever is published last is fine
+            current = updateRing(current, availableServerStats);
+            ring = current;
+        }
+
+        long totalOpenRequests = 0;
+        for (int i = 0; i < size; i++) {
+            totalOpenRequests += availableServerStats.get(i).getOpenRequestCount();
+        }
+        // counting the request about to be sent, so an idle cluster has room for it
+        double capacity = Math.ceil(Math.max(loadFactor.get(), 1.0) * (totalOpenRequests + 1) / size);
+
+        long[] hashes = current.hashes;
+        int start = Arrays.binarySearch(hashes, hash(key));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            ServerStats stat = current.owners[(start + i) % hashes.length];
+            if (stat.getOpenRequestCount() < capacity) {
+                return stat;
+            }
+        }
+        // not reachable unless open requests changed under us, so settle for the key's own server
+        return current.owners[start % hashes.length];
+    }
+
+    private static Ring updateRing(Ring previous, List<ServerStats> servers) {
+        int nodes = Math.max(virtualNodes.get(), 1);
+        boolean incremental = previous.virtualNodes == nodes;
+
+        Set<ServerStats> remaining = Collections.newSetFromMap(new IdentityHashMap<ServerStats, Boolean>());
+        remaining.addAll(servers);
+
+        // keep the points of servers which are still available
+        List<Point> points = new ArrayList<>(servers.size() * nodes);
+        Set<ServerStats> placed = Collections.newSetFromMap(new IdentityHashMap<ServerStats, Boolean>());
+        if (incremental) {
+            for (int i = 0; i < previous.hashes.length; i++) {
+                if (remaining.contains(previous.owners[i])) {
+                    points.add(new Point(previous.hashes[i], previous.owners[i]));
+                    placed.add(previous.owners[i]);
+                }
+            }
+        }
+        int kept = points.size();
+
+        // and only hash the points of new servers
+        for (ServerStats stat : servers) {
+            if (placed.add(stat)) {
+                String id = stat.getServerInstance().getId();
+                for (int i = 0; i < nodes; i++) {
+                    points.add(new Point(hash(id + "#" + i), stat));
+                }
+            }
+        }
+        Collections.sort(points.subList(kept, points.size()));
+
+        // merge the kept points, which are already in order, with the new ones
+        long[] hashes = new long[points.size()];
+        ServerStats[] owners = new ServerStats[points.size()];
+        int a = 0;
+        int b = kept;
+        for (int i = 0; i < hashes.length; i++) {
+            Point point = (b >= points.size() || (a < kept && points.get(a).compareTo(points.get(b)) <= 0)) ? points.get(a++) : points.get(b++);
+            hashes[i] = point.hash;
+            owners[i] = point.owner;
+        }
+        return new Ring(servers, hashes, owners, nodes);
+    }
+
+    private static long hash(String value) {
+        return hashFunction.hashString(value, Charsets.UTF_8).asLong();
+    }
+
+    /**
+     * A point on the ring.
+     */
+    private static class Point implements Comparable<Point> {
+        private final long hash;
+        private final ServerStats owner;
+
+        private Point(long hash, ServerStats owner) {
+            this.hash = hash;
+            this.owner = owner;
+        }
+
+        @Override
+        public int compareTo(Point other) {
+            return (hash < other.hash) ? -1 : ((hash == other.hash) ? 0 : 1);
+        }
+    }
+
+    /**
+     * The points of the servers of a list of available servers, ordered by hash.
+     */
+    private static class Ring {
+        private final List<ServerStats> servers;
+        private final long[] hashes;
+        private final ServerStats[] owners;
+        private final int virtualNodes;
+
+        private Ring(List<ServerStats> servers, long[] hashes, ServerStats[] owners, int virtualNodes) {
+            this.servers = servers;
+            this.hashes = hashes;
+            this.owners = owners;
+            this.virtualNodes = virtualNodes;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import com.kixeye.janus.ServerStats;
+
+/**
+ * A {@link LoadBalancer} which can also route requests/messages by key, so that those with the same key keep
+ * landing on the same server instance (for example to make use of per-user caches) for as long as it is available.
+ */
+public interface KeyedLoadBalancer extends LoadBalancer {
+
+    /**
+     * Choose an available server for the given key from the list of servers.
+     *
+     * @param availableServerStats the servers to choose from
+     * @param key the routing key
+     * @return server if available, null otherwise
+     */
+    ServerStats choose(List<ServerStats> availableServerStats, String key);
+}
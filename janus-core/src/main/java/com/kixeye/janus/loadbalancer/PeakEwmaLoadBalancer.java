@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.kixeye.janus.ServerStats;
+
+/**
+ * Picks two servers at random from the given collection of servers and chooses the one with the lower expected
+ * latency: its peak sensitive moving average latency (see {@link com.kixeye.janus.PeakEwma}) times its number of
+ * open requests plus the one about to be sent, divided by its weight (see {@link com.kixeye.janus.ServerInstance#getWeight()}).
+ * <p/>
+ * Unlike latency percentiles, the moving average reacts to a server getting slow on its very next response, and
+ * recovers gradually as fast responses (or no responses at all) come in. Servers without latencies yet count as
+ * fast until they have a request outstanding, and then as very slow until it completes, so they get measured
+ * without being flooded.
+ */
+public class PeakEwmaLoadBalancer implements LoadBalancer {
+    // the cost of a server with open requests but without latencies
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the cheaper of two randomly picked {@link com.kixeye.janus.ServerStats}
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        int size = availableServerStats.size();
+        if (size == 1) {
+            return availableServerStats.get(0);
+        }
+
+        // two distinct servers
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServerStats a = availableServerStats.get(first);
+        ServerStats b = availableServerStats.get(second);
+        long now = a.getServerInstance().getClock().nanoTime();
+        return (getCost(b, now) < getCost(a, now)) ? b : a;
+    }
+
+    private static double getCost(ServerStats stat, long now) {
+        long openRequests = stat.getOpenRequestCount();
+        double latency = stat.getPeakEwma().get(now);
+        double cost;
+        if (latency == 0 && openRequests > 0) {
+            cost = PENALTY + openRequests;
+        } else {
+            cost = latency * (openRequests + 1);
+        }
+        return cost / Math.max(stat.getServerInstance().getWeight(), Double.MIN_VALUE);
+    }
+}
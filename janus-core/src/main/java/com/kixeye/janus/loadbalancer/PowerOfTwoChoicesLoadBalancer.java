@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.kixeye.janus.ServerStats;
+
+/**
+ * Picks two servers at random from the given collection of servers and chooses the less loaded of the two,
+ * which spreads load almost as evenly as comparing every server, at constant cost per request.
+ * <p/>
+ * By default a server's load is its number of open requests. A latency weighted load balancer scores servers by
+ * their number of open requests (plus the one about to be sent) times their median latency instead, so slower servers
+ * need fewer open requests to count as loaded. Either way the score is divided by the server's weight
+ * (see {@link com.kixeye.janus.ServerInstance#getWeight()}), so slow started servers count as more loaded.
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+    private final boolean latencyWeighted;
+
+    public PowerOfTwoChoicesLoadBalancer() {
+        this(false);
+    }
+
+    /**
+     * @param latencyWeighted true to weight open requests by latency, false to only compare open requests
+     */
+    public PowerOfTwoChoicesLoadBalancer(boolean latencyWeighted) {
+        this.latencyWeighted = latencyWeighted;
+    }
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the less loaded of two randomly picked {@link com.kixeye.janus.ServerStats}
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        int size = availableServerStats.size();
+        if (size == 1) {
+            return availableServerStats.get(0);
+        }
+
+        // two distinct servers
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServerStats a = availableServerStats.get(first);
+        ServerStats b = availableServerStats.get(second);
+        return (getLoad(b) < getLoad(a)) ? b : a;
+    }
+
+    private double getLoad(ServerStats stat) {
+        double load = stat.getOpenRequestCount();
+        if (latencyWeighted) {
+            // servers without latencies yet count as fast, so they get some requests to measure
+            load = (load + 1) * Math.max(stat.getLatencyRecorder().getP50(), 1);
+        }
+        return load / Math.max(stat.getServerInstance().getWeight(), Double.MIN_VALUE);
+    }
+}
@@ -19,18 +19,24 @@
  */
 package com.kixeye.janus.loadbalancer;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.kixeye.janus.ServerStats;
 
 /**
- * Randomly chooses a server from the given collection of servers.
+ * Randomly chooses a server from the given collection of servers. Servers are chosen in proportion to their
+ * weight (see {@link com.kixeye.janus.ServerInstance#getWeight()}), so slow started servers get a smaller share.
+ * <p/>
+ * Servers only start warming up when they join the list of available servers, so the weights are only looked at when a
+ * different list is given, and on every choice after that until no server is warming up any more. Otherwise a server
+ * is chosen uniformly, in constant time.
  *
  * @author cbarry@kixeye.com
  */
 public class RandomLoadBalancer implements LoadBalancer {
-    private Random random = new Random(this.hashCode());
+    private volatile Warmup warmup = new Warmup(null, false);
 
     /**
      * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
@@ -39,8 +45,56 @@ public class RandomLoadBalancer implements LoadBalancer {
      */
     @Override
     public ServerStats choose(List<ServerStats> availableServerStats) {
-        int index = random.nextInt(availableServerStats.size());
-        return availableServerStats.get(index);
+        int size = availableServerStats.size();
+        // a per thread generator, so concurrent callers don't contend on a shared seed
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Warmup current = warmup;
+        if (current.servers == availableServerStats && !current.warmingUp) {
+            return availableServerStats.get(random.nextInt(size));
+        }
+
+        double[] weights = null;
+        double totalWeight = 0;
+        for (int i = 0; i < size; i++) {
+            double weight = availableServerStats.get(i).getServerInstance().getWeight();
+            if (weight != 1.0 && weights == null) {
+                // only pay for a weighted choice when some server is weighted
+                weights = new double[size];
+                Arrays.fill(weights, 0, i, 1.0);
+            }
+            if (weights != null) {
+                weights[i] = weight;
+            }
+            totalWeight += weight;
+        }
+        if (current.servers != availableServerStats || weights == null) {
+            warmup = new Warmup(availableServerStats, weights != null);
+        }
+        if (weights == null || totalWeight <= 0) {
+            return availableServerStats.get(random.nextInt(size));
+        }
+
+        double target = random.nextDouble() * totalWeight;
+        for (int i = 0; i < size; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                return availableServerStats.get(i);
+            }
+        }
+        return availableServerStats.get(size - 1);
+    }
+
+    /**
+     * Whether any server of a list of available servers was still warming up when last looked at.
+     */
+    private static class Warmup {
+        private final List<ServerStats> servers;
+        private final boolean warmingUp;
+
+        private Warmup(List<ServerStats> servers, boolean warmingUp) {
+            this.servers = servers;
+            this.warmingUp = warmingUp;
+        }
     }
 
 }
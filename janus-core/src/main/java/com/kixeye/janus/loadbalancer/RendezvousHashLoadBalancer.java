@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.kixeye.janus.ServerStats;
+
+/**
+ * Routes keys to servers with rendezvous (highest random weight) hashing: every server gets a pseudo random score
+ * for the key, from the key and its instance id, and the highest scoring server wins. A key therefore keeps landing
+ * on the same server while it is available, and when a server comes or goes only the keys it wins move, i.e. about 1/n
+ * of them. Unlike a hash ring there is nothing to tune, at the price of scoring every server for each key, which suits
+ * infrequent choices such as establishing sessions.
+ * <p/>
+ * The instance id hashes are only computed when a different list of available servers is given, which
+ * {@link com.kixeye.janus.Janus} only does after a refresh or availability change. Requests/messages without a key go
+ * to the less loaded of two random servers (see {@link PowerOfTwoChoicesLoadBalancer}).
+ */
+public class RendezvousHashLoadBalancer implements KeyedLoadBalancer {
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    private final LoadBalancer unkeyed = new PowerOfTwoChoicesLoadBalancer();
+    private volatile Ids ids = new Ids(null, new long[0]);
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the less loaded of two randomly picked {@link com.kixeye.janus.ServerStats}
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        return unkeyed.choose(availableServerStats);
+    }
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @param key the routing key
+     * @return the highest scoring {@link com.kixeye.janus.ServerStats} for the key
+     * @see {@link KeyedLoadBalancer#choose(java.util.List, String)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats, String key) {
+        int size = availableServerStats.size();
+        if (size == 0) {
+            return null;
+        }
+        Ids current = ids;
+        if (current.servers != availableServerStats) {
+            long[] hashes = new long[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = hash(availableServerStats.get(i).getServerInstance().getId());
+            }
+            current = new Ids(availableServerStats, hashes);
+            ids = current;
+        }
+
+        long keyHash = hash(key);
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            long score = mix(keyHash ^ current.hashes[i]);
+            // ties (practically never) go to the lower instance id, so every client agrees
+            if (score > bestScore || (score == bestScore && availableServerStats.get(i).getServerInstance().getId()
+                    .compareTo(availableServerStats.get(best).getServerInstance().getId()) < 0)) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return availableServerStats.get(best);
+    }
+
+    private static long hash(String value) {
+        return hashFunction.hashString(value, Charsets.UTF_8).asLong();
+    }
+
+    // the murmur3 finalizer, so every bit of the combined hashes affects the score
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The instance id hashes of a list of available servers.
+     */
+    private static class Ids {
+        private final List<ServerStats> servers;
+        private final long[] hashes;
+
+        private Ids(List<ServerStats> servers, long[] hashes) {
+            this.servers = servers;
+            this.hashes = hashes;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+
+/**
+ * Randomly chooses a server from the given collection of servers in proportion to its configured weight
+ * (see {@link ConfiguredWeights}) times its slow start weight (see {@link ServerInstance#getWeight()}), in constant
+ * time regardless of the number of servers.
+ * <p/>
+ * The weights are turned into an alias table (Vose's alias method) when a different list of available servers is given,
+ * which {@link com.kixeye.janus.Janus} only does after a refresh or availability change. While any server is slow
+ * started, the table is also rebuilt about once a second to follow its growing weight. Choosing a server then costs
+ * two random numbers from the calling thread's {@link ThreadLocalRandom}, without locking.
+ */
+public class WeightedRandomLoadBalancer implements LoadBalancer {
+    private static final long WARMUP_REBUILD_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConfiguredWeights configuredWeights;
+    private volatile AliasTable table = new AliasTable(null, new double[0], new int[0], Long.MAX_VALUE);
+
+    /**
+     * @param serviceName the service cluster name
+     */
+    public WeightedRandomLoadBalancer(String serviceName) {
+        this.configuredWeights = new ConfiguredWeights(serviceName);
+    }
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the chosen {@link com.kixeye.janus.ServerStats}
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        if (availableServerStats.isEmpty()) {
+            return null;
+        }
+        AliasTable current = table;
+        if (current.servers != availableServerStats
+                || (current.expiration != Long.MAX_VALUE && availableServerStats.get(0).getServerInstance().getClock().nanoTime() - current.expiration >= 0)) {
+            // racing threads build equivalent tables, so whichever is published last is fine
+            current = buildTable(availableServerStats);
+            table = current;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(current.probability.length);
+        if (random.nextDouble() >= current.probability[index]) {
+            index = current.alias[index];
+        }
+        return availableServerStats.get(index);
+    }
+
+    private AliasTable buildTable(List<ServerStats> servers) {
+        int size = servers.size();
+        double[] weights = new double[size];
+        double total = 0;
+        boolean warmingUp = false;
+        for (int i = 0; i < size; i++) {
+            ServerInstance instance = servers.get(i).getServerInstance();
+            double slowStartWeight = instance.getWeight();
+            warmingUp |= slowStartWeight < 1.0;
+            weights[i] = configuredWeights.get(instance) * slowStartWeight;
+            total += weights[i];
+        }
+        long expiration = warmingUp ? servers.get(0).getServerInstance().getClock().nanoTime() + WARMUP_REBUILD_INTERVAL_IN_NANOS : Long.MAX_VALUE;
+
+        // scale the weights to average 1, splitting them into those under (small) and over (large) the average
+        double[] probability = new double[size];
+        int[] alias = new int[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = (total > 0) ? weights[i] * size / total : 1.0;
+            if (weights[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        // each small entry is topped up to the average by a large one
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = weights[less];
+            alias[less] = more;
+            weights[more] = (weights[more] + weights[less]) - 1.0;
+            if (weights[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // whatever is left is (up to rounding errors) exactly average
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+        return new AliasTable(servers, probability, alias, expiration);
+    }
+
+    /**
+     * The alias table for a list of available servers.
+     */
+    private static class AliasTable {
+        private final List<ServerStats> servers;
+        private final double[] probability;
+        private final int[] alias;
+        private final long expiration;
+
+        private AliasTable(List<ServerStats> servers, double[] probability, int[] alias, long expiration) {
+            this.servers = servers;
+            this.probability = probability;
+            this.alias = alias;
+            this.expiration = expiration;
+        }
+    }
+}
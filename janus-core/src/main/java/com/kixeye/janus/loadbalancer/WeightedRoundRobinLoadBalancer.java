@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+
+/**
+ * Chooses servers in turn, each in proportion to its configured weight (see {@link ConfiguredWeights}) times its slow
+ * start weight (see {@link ServerInstance#getWeight()}), interleaving them as evenly as possible rather than sending a
+ * heavy server a burst of consecutive requests: a server of weight w takes the slots at (2j + 1) / 2w of the round.
+ * <p/>
+ * The whole round is precomputed when a different list of available servers is given, which {@link com.kixeye.janus.Janus}
+ * only does after a refresh or availability change. While any server is slow started, the round is also rebuilt about
+ * once a second to follow its growing weight. Building a round takes O(length * log(servers)), with the length capped
+ * at 16384 slots, and choosing a server is then a single atomic increment, without locking.
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+    // rounds longer than this are scaled down, trading weight precision for rebuild time
+    private static final int MAX_ROUND_LENGTH = 1 << 14;
+    // slow start weights are rounded to this many steps
+    private static final int SLOW_START_RESOLUTION = 100;
+    private static final long WARMUP_REBUILD_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConfiguredWeights configuredWeights;
+    private final AtomicLong position = new AtomicLong();
+    private volatile Round round = new Round(null, new int[0], Long.MAX_VALUE);
+
+    /**
+     * @param serviceName the service cluster name
+     */
+    public WeightedRoundRobinLoadBalancer(String serviceName) {
+        this.configuredWeights = new ConfiguredWeights(serviceName);
+    }
+
+    /**
+     * @param availableServerStats the collection of {@link com.kixeye.janus.ServerStats} to choose from
+     * @return the next {@link com.kixeye.janus.ServerStats} in the round
+     * @see {@link LoadBalancer#choose(java.util.List)}
+     */
+    @Override
+    public ServerStats choose(List<ServerStats> availableServerStats) {
+        if (availableServerStats.isEmpty()) {
+            return null;
+        }
+        Round current = round;
+        if (current.servers != availableServerStats
+                || (current.expiration != Long.MAX_VALUE && availableServerStats.get(0).getServerInstance().getClock().nanoTime() - current.expiration >= 0)) {
+            // racing threads compute equivalent rounds, so whichever is published last is fine
+            current = buildRound(availableServerStats);
+            round = current;
+        }
+        int[] order = current.order;
+        int index = (int) ((position.getAndIncrement() & Long.MAX_VALUE) % order.length);
+        return availableServerStats.get(order[index]);
+    }
+
+    /**
+     * get the configured weight of a server instance
+     * @param instance the server instance
+     * @return the weight, >= 0
+     */
+    public int getConfiguredWeight(ServerInstance instance) {
+        return configuredWeights.get(instance);
+    }
+
+    private Round buildRound(List<ServerStats> servers) {
+        int size = servers.size();
+        final long[] weights = new long[size];
+        long total = 0;
+        boolean warmingUp = false;
+        for (int i = 0; i < size; i++) {
+            ServerInstance instance = servers.get(i).getServerInstance();
+            long weight = getConfiguredWeight(instance);
+            if (weight > 0) {
+                double slowStartWeight = instance.getWeight();
+                warmingUp |= slowStartWeight < 1.0;
+                weight *= Math.max(1, Math.round(slowStartWeight * SLOW_START_RESOLUTION));
+            }
+            weights[i] = weight;
+            total += weight;
+        }
+        long expiration = warmingUp ? servers.get(0).getServerInstance().getClock().nanoTime() + WARMUP_REBUILD_INTERVAL_IN_NANOS : Long.MAX_VALUE;
+        if (total == 0) {
+            // nothing is weighted, so treat all servers equally
+            for (int i = 0; i < size; i++) {
+                weights[i] = 1;
+            }
+            total = size;
+        }
+
+        // the shortest round with the same proportions
+        long gcd = 0;
+        for (long weight : weights) {
+            gcd = gcd(gcd, weight);
+        }
+        long reduced = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] /= gcd;
+            reduced += weights[i];
+        }
+        total = reduced;
+        if (total > MAX_ROUND_LENGTH) {
+            long scaled = 0;
+            for (int i = 0; i < size; i++) {
+                if (weights[i] > 0) {
+                    weights[i] = Math.max(1, weights[i] * MAX_ROUND_LENGTH / total);
+                }
+                scaled += weights[i];
+            }
+            total = scaled;
+        }
+
+        // merge every server's slots in order of time, (2 * taken + 1) / (2 * weight), ties going to the lower index
+        final long[] taken = new long[size];
+        PriorityQueue<Integer> due = new PriorityQueue<>(Math.max(1, size), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Long.compare((2 * taken[a] + 1) * weights[b], (2 * taken[b] + 1) * weights[a]);
+                return (result != 0) ? result : Integer.compare(a, b);
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            if (weights[i] > 0) {
+                due.add(i);
+            }
+        }
+        int[] order = new int[(int) total];
+        for (int step = 0; step < order.length; step++) {
+            int next = due.poll();
+            order[step] = next;
+            if (++taken[next] < weights[next]) {
+                due.add(next);
+            }
+        }
+        return new Round(servers, order, expiration);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * The precomputed round for a list of available servers.
+     */
+    private static class Round {
+        private final List<ServerStats> servers;
+        private final int[] order;
+        private final long expiration;
+
+        private Round(List<ServerStats> servers, int[] order, long expiration) {
+            this.servers = servers;
+            this.order = order;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -66,7 +66,8 @@ import com.netflix.config.DynamicPropertyFactory;
  * janus.serviceName.{service name}.escapeRegionThreshold (defaults to 0.9)
  * janus.serviceName.{service name}.escapeAreaThreshold (defaults to 0.9)
  * <p/>
- * A server instance's load factor is calculated as its current (messages sent per second) / {janus.serviceName.{service cluster}.maxRequestsPerSecond} (defaults to 100)
+ * A server instance's load factor is calculated as its current (messages sent per second) / {janus.serviceName.{service cluster}.maxRequestsPerSecond} (defaults to 100),
+ * scaled up by the inverse of its weight (see {@link ServerInstance#getWeight()}) while it is slow started.
  *
  * @author cbarry@kixeye.com
  */
@@ -137,7 +138,8 @@ public class ZoneAwareLoadBalancer implements LoadBalancer {
             MetaData meta = new MetaData();
             meta.location = locations.getUnchecked(s);
             meta.server = s;
-            meta.load = s.getSentMessagesPerSecond() / maxRequestsPerSecond;
+            // slow started servers count as more loaded, as they can only take a share of the requests
+            meta.load = s.getSentMessagesPerSecond() / (maxRequestsPerSecond * instance.getWeight());
             meta.sessionCount = s.getOpenSessionsCount();
             meta.locationBits = 0;
             if (myLocation.getAvailabilityZone().equals(meta.location.getAvailabilityZone())) {
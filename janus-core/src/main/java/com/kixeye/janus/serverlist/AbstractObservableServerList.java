@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * Base class for {@link ObservableServerList}s.
+ * <p/>
+ * Sub-classes call {@link #publish(java.util.List)} with their latest view of the service cluster. The new view is
+ * compared with the previously published one, and only the server instances which were added, removed or whose
+ * availability changed are pushed to the registered {@link ServerListListener}s.
+ * <p/>
+ * A server instance is published once, when it is first seen, and that same {@link ServerInstance} is updated in
+ * place by later publishes for as long as it stays in the service cluster. Callers holding on to it (such as
+ * {@link com.kixeye.janus.Janus}) therefore always see its latest availability. A server instance which moved to a
+ * different address (host, ports or security) under the same id is published as removed and re-added instead, since
+ * the address of a {@link ServerInstance} can not change.
+ */
+public abstract class AbstractObservableServerList implements ObservableServerList {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractObservableServerList.class);
+
+    private final List<ServerListListener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private Map<String, PublishedServer> published = new LinkedHashMap<>();
+    private volatile List<ServerInstance> publishedServers = Collections.emptyList();
+
+    /**
+     * @see {@link ObservableServerList#addServerListListener(ServerListListener)}
+     */
+    @Override
+    public void addServerListListener(ServerListListener listener) {
+        Preconditions.checkNotNull(listener, "'listener' cannot be null.");
+        listeners.add(listener);
+    }
+
+    /**
+     * @see {@link ObservableServerList#removeServerListListener(ServerListListener)}
+     */
+    @Override
+    public void removeServerListListener(ServerListListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Are there any listeners registered?
+     * @return whether or not any listeners are registered
+     */
+    protected boolean hasServerListListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Gets the most recently published server instances.
+     * @return the published server instances
+     */
+    protected List<ServerInstance> getPublishedServers() {
+        return publishedServers;
+    }
+
+    /**
+     * Publish the current server instances of the service cluster, notifying listeners of any changes.
+     *
+     * @param current the current server instances
+     * @return the published server instances
+     */
+    protected synchronized List<ServerInstance> publish(List<ServerInstance> current) {
+        Map<String, PublishedServer> previous = published;
+        Map<String, PublishedServer> next = new LinkedHashMap<>(current.size() * 2);
+        List<ServerInstance> added = new ArrayList<>();
+        List<ServerInstance> changed = new ArrayList<>();
+        List<ServerInstance> removed = new ArrayList<>();
+
+        for (ServerInstance s : current) {
+            if (next.containsKey(s.getId())) {
+                continue;
+            }
+
+            PublishedServer p = previous.remove(s.getId());
+            boolean available = s.isAvailable();
+            if (p != null && (p.instance.getClass() != s.getClass() || !isSameAddress(p.instance, s))) {
+                // a different kind of server instance (e.g. discovered rather than seeded), or one which moved,
+                // replaces the published one
+                removed.add(p.instance);
+                p = null;
+            }
+            if (p == null) {
+                next.put(s.getId(), new PublishedServer(s, available));
+                added.add(s);
+            } else if (p.instance == s) {
+                // the already published instance was re-used, the sub-class has kept it up to date
+                next.put(s.getId(), p);
+            } else {
+                // keep the already published instance, updating it in place
+                p.instance.setAvailable(available);
+                if (update(p.instance, s) || available != p.available) {
+                    changed.add(p.instance);
+                }
+                next.put(s.getId(), new PublishedServer(p.instance, available));
+            }
+        }
+
+        for (PublishedServer p : previous.values()) {
+            removed.add(p.instance);
+        }
+
+        List<ServerInstance> servers = new ArrayList<>(next.size());
+        for (PublishedServer p : next.values()) {
+            servers.add(p.instance);
+        }
+        published = next;
+        publishedServers = Collections.unmodifiableList(servers);
+
+        // notify while holding the lock so listeners see deltas in order
+        ServerListDelta delta = new ServerListDelta(added, removed, changed);
+        if (!delta.isEmpty()) {
+            for (ServerListListener listener : listeners) {
+                try {
+                    listener.onServerListChanged(delta);
+                } catch (Exception e) {
+                    logger.error("Exception notifying listener of server list changes", e);
+                }
+            }
+        }
+        return publishedServers;
+    }
+
+    /**
+     * Update an already published server instance with any information, other than availability,
+     * from a newer view of the same server instance.
+     *
+     * @param published the already published server instance
+     * @param current the newer view of the server instance
+     * @return true if the published server instance was changed, false otherwise
+     */
+    protected boolean update(ServerInstance published, ServerInstance current) {
+        return false;
+    }
+
+    private static boolean isSameAddress(ServerInstance a, ServerInstance b) {
+        return a.getHost().equals(b.getHost())
+                && a.getPort() == b.getPort()
+                && a.getWebsocketPort() == b.getWebsocketPort()
+                && a.isSecure() == b.isSecure();
+    }
+
+    private static class PublishedServer {
+        private final ServerInstance instance;
+        private final boolean available;
+
+        private PublishedServer(ServerInstance instance, boolean available) {
+            this.instance = instance;
+            this.available = available;
+        }
+    }
+}
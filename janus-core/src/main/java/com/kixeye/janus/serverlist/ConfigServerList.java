@@ -30,7 +30,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Converts property "janus.listOfServers.{service cluster name}" into a server list. The property value
@@ -39,10 +38,12 @@ import java.util.concurrent.atomic.AtomicReference;
  * Examples:
  * janus.listOfServers.MyServiceCluster=http://myserver1:8180
  * janus.listOfServers.MyServiceCluster=http://myserver1:8180,http://myserver2:8180
+ * <p/>
+ * Changes to the property are pushed to registered {@link ServerListListener}s as they happen.
  *
  * @author cbarry@kixeye.com
  */
-public class ConfigServerList implements ServerList {
+public class ConfigServerList extends AbstractObservableServerList {
 
     final static Logger logger = LoggerFactory.getLogger(ConfigServerList.class);
 
@@ -50,7 +51,6 @@ public class ConfigServerList implements ServerList {
 
     private final String serviceName;
     private final DynamicStringProperty propServers;
-    private final AtomicReference<List<ServerInstance>> servers = new AtomicReference<List<ServerInstance>>(new ArrayList<ServerInstance>());
 
     /**
      * @param serviceName the service cluster name. Configuration property should end with this (janus.listOfServers.{serviceName}).
@@ -94,13 +94,13 @@ public class ConfigServerList implements ServerList {
      */
     @Override
     public List<ServerInstance> getListOfServers() {
-        return servers.get();
+        return getPublishedServers();
     }
 
     private void convertPropertyToList() {
         String value = propServers.get();
         if (Strings.isNullOrEmpty(value)) {
-            servers.set(new ArrayList<ServerInstance>());
+            publish(new ArrayList<ServerInstance>());
             return;
         }
 
@@ -110,6 +110,6 @@ public class ConfigServerList implements ServerList {
             server.setAvailable(true);
             newServers.add(server);
         }
-        servers.set(newServers);
+        publish(newServers);
     }
 }
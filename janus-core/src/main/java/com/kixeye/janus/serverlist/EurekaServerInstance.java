@@ -19,6 +19,7 @@
  */
 package com.kixeye.janus.serverlist;
 
+import com.kixeye.janus.JanusClock;
 import com.kixeye.janus.ServerInstance;
 import com.kixeye.scout.eureka.EurekaServiceInstanceDescriptor;
 import com.netflix.config.DynamicLongProperty;
@@ -32,10 +33,10 @@ import com.netflix.config.DynamicPropertyFactory;
  */
 public class EurekaServerInstance extends ServerInstance {
 
-    private EurekaServiceInstanceDescriptor instanceInfo;
+    private volatile EurekaServiceInstanceDescriptor instanceInfo;
 
     // track time since instance has been updated
-    private long lastUpdateTime = System.currentTimeMillis();
+    private volatile long lastUpdateTime = getClock().millis();
     private DynamicLongProperty propInstanceTimeout = DynamicPropertyFactory.getInstance().getLongProperty("janus.InstanceTimeOutInMillis", 125000);
 
     public EurekaServerInstance(String serviceName, String url) {
@@ -55,13 +56,24 @@ public class EurekaServerInstance extends ServerInstance {
         return instanceInfo;
     }
 
+    void setInstanceInfo(EurekaServiceInstanceDescriptor instanceInfo) {
+        this.instanceInfo = instanceInfo;
+    }
+
     public boolean isExpired() {
-        return (lastUpdateTime + propInstanceTimeout.get()) < System.currentTimeMillis();
+        return (lastUpdateTime + propInstanceTimeout.get()) < getClock().millis();
+    }
+
+    @Override
+    public void setClock(JanusClock clock) {
+        super.setClock(clock);
+        // times from the previous clock are meaningless
+        lastUpdateTime = clock.millis();
     }
 
     @Override
     public void setAvailable(boolean isAvailable) {
-        lastUpdateTime = System.currentTimeMillis();
+        lastUpdateTime = getClock().millis();
         super.setAvailable(isAvailable);
     }
 }
@@ -20,15 +20,27 @@
 package com.kixeye.janus.serverlist;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.kixeye.janus.Janus;
+import com.kixeye.janus.JanusClock;
+import com.kixeye.janus.RefreshScheduler;
 import com.kixeye.janus.ServerInstance;
 import com.kixeye.scout.ServiceStatus;
 import com.kixeye.scout.eureka.EurekaServiceDiscoveryClient;
 import com.kixeye.scout.eureka.EurekaServiceInstanceDescriptor;
+import com.netflix.config.DynamicLongProperty;
+import com.netflix.config.DynamicPropertyFactory;
 
 /**
  * A {@link ServerList} which uses a remote Eureka server to discover
@@ -39,16 +51,50 @@ import com.kixeye.scout.eureka.EurekaServiceInstanceDescriptor;
  *
  * Server instance discovery and cache management is actually handled by
  * Netflix's {@link DiscoveryManager}. https://github.com/Netflix/eureka/wiki
+ * <p/>
+ * While {@link ServerListListener}s are registered, the discovery client is watched for refreshes
+ * (every "janus.eureka.watchIntervalInMillis", defaulting to 1 second) and changes are pushed to the
+ * listeners as soon as the discovery client sees them. The server instances are also re-published at
+ * least every "janus.refreshIntervalInMillis" to keep them from expiring while discovery is quiet.
+ * <p/>
+ * By default the constructor waits up to 5 seconds for the discovery client's first refresh. When constructed
+ * asynchronously it returns immediately instead, and {@link #getReadyFuture()} completes once the first refresh
+ * has happened (see {@link SeededServerList} to serve from a seed list until then).
+ * <p/>
+ * Converted server instances are cached by instance id and Eureka's last updated timestamp, so descriptors
+ * which have not changed since the previous poll re-use the already published {@link EurekaServerInstance}.
  *
  * @author cbarry@kixeye.com
  */
-public class EurekaServerList implements ServerList {
+public class EurekaServerList extends AbstractObservableServerList {
+    private static final Logger logger = LoggerFactory.getLogger(EurekaServerList.class);
+
+    public static final String WATCH_INTERVAL_IN_MILLIS = "janus.eureka.watchIntervalInMillis";
+    public static final long DEFAULT_WATCH_INTERVAL_IN_MILLIS = 1000;
+
+    private static final long INITIAL_REFRESH_WAIT_IN_MILLIS = 5000;
+    private static final long READY_CHECK_INTERVAL_IN_MILLIS = 100;
+
+    private static final DynamicLongProperty watchInterval = DynamicPropertyFactory.getInstance().getLongProperty(WATCH_INTERVAL_IN_MILLIS, DEFAULT_WATCH_INTERVAL_IN_MILLIS);
+    private static final DynamicLongProperty republishInterval = DynamicPropertyFactory.getInstance().getLongProperty(Janus.REFRESH_INTERVAL_IN_MILLIS, Janus.DEFAULT_REFRESH_INTERVAL_IN_MILLIS);
 
     private String serviceName;
     private EurekaServiceDiscoveryClient discoveryClient;
     private boolean useSecure;
     private boolean useInternalIp;
 
+    // watching the discovery client for refreshes
+    private final RefreshScheduler refreshScheduler;
+    private final long republishIntervalInMillis;
+    private final AtomicBoolean watching = new AtomicBoolean(false);
+    private volatile long lastRefreshTime = -1;
+    private volatile long lastPublishTime = -1;
+    private final SettableFuture<Void> ready = SettableFuture.create();
+    private volatile JanusClock clock;
+
+    // converted server instances, guarded by this
+    private Map<String, CachedInstance> cache = new LinkedHashMap<>();
+
     /**
      *
      * @param eurekaServiceUrl the url of the eureka service
@@ -57,7 +103,19 @@ public class EurekaServerList implements ServerList {
      * @param useInternalIp whether or not to use internal IPs when connecting to server instances
      */
     public EurekaServerList(String eurekaServiceUrl, String serviceName, boolean useSecure, boolean useInternalIp) {
-        this(new EurekaServiceDiscoveryClient(eurekaServiceUrl, 30, TimeUnit.SECONDS), serviceName, useSecure, useInternalIp );
+        this(eurekaServiceUrl, serviceName, useSecure, useInternalIp, false);
+    }
+
+    /**
+     *
+     * @param eurekaServiceUrl the url of the eureka service
+     * @param serviceName the name of the service cluster to fetch instances from
+     * @param useSecure whether or not request/messages to server instances will use secure ports
+     * @param useInternalIp whether or not to use internal IPs when connecting to server instances
+     * @param async whether or not to return without waiting for the first refresh from eureka
+     */
+    public EurekaServerList(String eurekaServiceUrl, String serviceName, boolean useSecure, boolean useInternalIp, boolean async) {
+        this(new EurekaServiceDiscoveryClient(eurekaServiceUrl, 30, TimeUnit.SECONDS), serviceName, useSecure, useInternalIp, async);
     }
 
     /**
@@ -68,22 +126,76 @@ public class EurekaServerList implements ServerList {
      * @param useInternalIp whether or not to use internal IPs when connecting to server instances
      */
     public EurekaServerList(EurekaServiceDiscoveryClient discoveryClient, String serviceName, boolean useSecure, boolean useInternalIp) {
+        this(discoveryClient, serviceName, useSecure, useInternalIp, false);
+    }
+
+    /**
+     *
+     * @param discoveryClient the {@link DiscoveryClient} to use
+     * @param serviceName the name of the service cluster to fetch instances from
+     * @param useSecure whether or not request/messages to server instances will use secure ports
+     * @param useInternalIp whether or not to use internal IPs when connecting to server instances
+     * @param async whether or not to return without waiting for the first refresh from eureka
+     */
+    public EurekaServerList(EurekaServiceDiscoveryClient discoveryClient, String serviceName, boolean useSecure, boolean useInternalIp, boolean async) {
+        this(discoveryClient, serviceName, useSecure, useInternalIp, async, JanusClock.system());
+    }
+
+    /**
+     *
+     * @param discoveryClient the {@link DiscoveryClient} to use
+     * @param serviceName the name of the service cluster to fetch instances from
+     * @param useSecure whether or not request/messages to server instances will use secure ports
+     * @param useInternalIp whether or not to use internal IPs when connecting to server instances
+     * @param async whether or not to return without waiting for the first refresh from eureka
+     * @param clock the {@link JanusClock} timing the wait for the first refresh and the re-publishing
+     */
+    public EurekaServerList(EurekaServiceDiscoveryClient discoveryClient, String serviceName, boolean useSecure, boolean useInternalIp, boolean async, JanusClock clock) {
+        this(discoveryClient, serviceName, useSecure, useInternalIp, async, clock, RefreshScheduler.getDefault(), -1);
+    }
+
+    /**
+     *
+     * @param discoveryClient the {@link DiscoveryClient} to use
+     * @param serviceName the name of the service cluster to fetch instances from
+     * @param useSecure whether or not request/messages to server instances will use secure ports
+     * @param useInternalIp whether or not to use internal IPs when connecting to server instances
+     * @param async whether or not to return without waiting for the first refresh from eureka
+     * @param clock the {@link JanusClock} timing the wait for the first refresh and the re-publishing
+     * @param refreshScheduler the {@link RefreshScheduler} watching the discovery client for refreshes
+     * @param republishIntervalInMillis the interval (in millis) to re-publish unchanged server instances at, or a negative
+     *                                  value to follow the property "janus.refreshIntervalInMillis"
+     */
+    public EurekaServerList(EurekaServiceDiscoveryClient discoveryClient, String serviceName, boolean useSecure, boolean useInternalIp, boolean async, JanusClock clock, RefreshScheduler refreshScheduler, long republishIntervalInMillis) {
         Preconditions.checkNotNull(serviceName);
         Preconditions.checkNotNull(discoveryClient);
+        Preconditions.checkNotNull(clock, "'clock' cannot be null.");
+        Preconditions.checkNotNull(refreshScheduler, "'refreshScheduler' cannot be null.");
 
         this.serviceName = serviceName;
         this.useSecure = useSecure;
         this.useInternalIp = useInternalIp;
         this.discoveryClient = discoveryClient;
-        
-        // wait for refresh
-        try {
-        	long startTime = System.currentTimeMillis();
-	        while (discoveryClient.getLastRefreshTime() < 0 && System.currentTimeMillis() - startTime < 5000) {
-	        	Thread.sleep(100);
-	        }
-        } catch (Exception e) {
-        	throw new RuntimeException(e);
+        this.clock = clock;
+        this.refreshScheduler = refreshScheduler;
+        this.republishIntervalInMillis = republishIntervalInMillis;
+
+        if (!async) {
+            // wait for refresh
+            try {
+                long startTime = clock.millis();
+                while (discoveryClient.getLastRefreshTime() < 0 && clock.millis() - startTime < INITIAL_REFRESH_WAIT_IN_MILLIS) {
+                    Thread.sleep(READY_CHECK_INTERVAL_IN_MILLIS);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        if (discoveryClient.getLastRefreshTime() >= 0) {
+            ready.set(null);
+        } else {
+            refreshScheduler.schedule(new ReadyTask(), READY_CHECK_INTERVAL_IN_MILLIS);
         }
     }
 
@@ -96,42 +208,191 @@ public class EurekaServerList implements ServerList {
         return serviceName;
     }
 
+    /**
+     * setter for clock, e.g. to run on the same {@link JanusClock} as the {@link Janus} instance using this server list
+     * @param clock the {@link JanusClock} timing the re-publishing
+     */
+    public void setClock(JanusClock clock) {
+        this.clock = Preconditions.checkNotNull(clock, "'clock' cannot be null.");
+    }
+
+    /**
+     * getter for clock
+     * @return the {@link JanusClock} timing the re-publishing
+     */
+    public JanusClock getClock() {
+        return clock;
+    }
+
+    /**
+     * getter for the re-publish interval
+     * @return the interval (in millis) at which unchanged server instances are re-published to listeners
+     */
+    public long getRepublishInterval() {
+        return (republishIntervalInMillis >= 0) ? republishIntervalInMillis : republishInterval.get();
+    }
+
+    /**
+     * Gets a future which completes once the discovery client has been refreshed from eureka for the first time.
+     * @return the readiness future
+     */
+    public ListenableFuture<Void> getReadyFuture() {
+        return ready;
+    }
+
     /**
      * Gets the current list of {@link EurekaServerInstance}s.
      * @return current server instances reported by Eureka
      */
     @Override
-    public List<ServerInstance> getListOfServers() {
-    	List<EurekaServiceInstanceDescriptor> instances = discoveryClient.describe(serviceName);
-        List<ServerInstance> servers = new ArrayList<ServerInstance>(instances.size());
+    public synchronized List<ServerInstance> getListOfServers() {
+        lastPublishTime = clock.millis();
+        Map<String, CachedInstance> converted = convert(discoveryClient.describe(serviceName));
+        List<ServerInstance> servers = new ArrayList<ServerInstance>(converted.size());
+        for (CachedInstance c : converted.values()) {
+            servers.add(c.server);
+        }
+
+        // cache the published instances, so they are re-used by the next poll
+        List<ServerInstance> published = publish(servers);
+        for (ServerInstance s : published) {
+            CachedInstance c = converted.get(s.getId());
+            if (c != null && c.server != s) {
+                c.server = (EurekaServerInstance) s;
+            }
+        }
+        cache = converted;
+        return published;
+    }
+
+    /**
+     * Updates a published server instance with a newer Eureka descriptor.
+     */
+    @Override
+    protected boolean update(ServerInstance published, ServerInstance current) {
+        if (published instanceof EurekaServerInstance && current instanceof EurekaServerInstance) {
+            EurekaServerInstance server = (EurekaServerInstance) published;
+            EurekaServiceInstanceDescriptor instanceInfo = ((EurekaServerInstance) current).getInstanceInfo();
+            if (server.getInstanceInfo() != instanceInfo) {
+                server.setInstanceInfo(instanceInfo);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a listener and starts watching the discovery client for refreshes.
+     * @param listener the listener
+     */
+    @Override
+    public void addServerListListener(ServerListListener listener) {
+        super.addServerListListener(listener);
+        if (watching.compareAndSet(false, true)) {
+            refreshScheduler.schedule(new WatchTask(), watchInterval.get());
+        }
+    }
+
+    private Map<String, CachedInstance> convert(List<EurekaServiceInstanceDescriptor> instances) {
+        Map<String, CachedInstance> converted = new LinkedHashMap<>(instances.size() * 2);
         for (EurekaServiceInstanceDescriptor instance : instances) {
-            String host;
-            if (useInternalIp) {
-                host = instance.getIpAddress();
-            } else {
-                host = instance.getHostname();
+            String id = instance.getIpAddress();
+            long lastUpdatedTimestamp = instance.getLastUpdatedTimestamp();
+
+            // re-use the instance if the descriptor has not changed
+            CachedInstance cached = cache.get(id);
+            if (cached == null || cached.lastUpdatedTimestamp != lastUpdatedTimestamp) {
+                cached = new CachedInstance(lastUpdatedTimestamp, newServerInstance(instance));
+            }
+            cached.server.setAvailable(ServiceStatus.UP == instance.getStatus());
+            converted.put(id, cached);
+        }
+        return converted;
+    }
+
+    private EurekaServerInstance newServerInstance(EurekaServiceInstanceDescriptor instance) {
+        String host;
+        if (useInternalIp) {
+            host = instance.getIpAddress();
+        } else {
+            host = instance.getHostname();
+        }
+
+        // get web socket ports from meta data
+        int websocketPort = -1;
+        int secureWebsocketPort = -1;
+        Map<String, String> metaData = instance.getMetadata();
+        if (metaData != null) {
+            String tmp = metaData.get("websocketPort");
+            if (tmp != null) {
+                websocketPort = Integer.parseInt(tmp);
             }
+            tmp = metaData.get("secureWebsocketPort");
+            if (tmp != null) {
+                secureWebsocketPort = Integer.parseInt(tmp);
+            }
+        }
+        int webSocketPortToRegister = useSecure ? secureWebsocketPort : websocketPort;
+
+        return new EurekaServerInstance(serviceName, instance.getIpAddress(), host, useSecure, instance.getPort(), webSocketPortToRegister, instance);
+    }
 
-            // get web socket ports from meta data
-            int websocketPort = -1;
-            int secureWebsocketPort = -1;
-            Map<String, String> metaData = instance.getMetadata();
-            if (metaData != null) {
-                String tmp = metaData.get("websocketPort");
-                if (tmp != null) {
-                    websocketPort = Integer.parseInt(tmp);
+    /**
+     * Publishes the server instances whenever the discovery client refreshes, for as long as listeners are registered.
+     */
+    private class WatchTask implements RefreshScheduler.Task {
+        @Override
+        public long run() {
+            if (!hasServerListListeners()) {
+                // stop watching, unless a listener was registered while stopping
+                watching.set(false);
+                if (!hasServerListListeners() || !watching.compareAndSet(false, true)) {
+                    return -1;
                 }
-                tmp = metaData.get("secureWebsocketPort");
-                if (tmp != null) {
-                    secureWebsocketPort = Integer.parseInt(tmp);
+            }
+
+            try {
+                long refreshTime = discoveryClient.getLastRefreshTime();
+                if (refreshTime != lastRefreshTime || clock.millis() - lastPublishTime >= getRepublishInterval()) {
+                    lastRefreshTime = refreshTime;
+                    getListOfServers();
                 }
+            } catch (Exception e) {
+                logger.error("Exception publishing server instances for service <" + serviceName + ">", e);
+            }
+            return watchInterval.get();
+        }
+    }
+
+    /**
+     * Completes the readiness future once the discovery client has been refreshed, and publishes the first result.
+     */
+    private class ReadyTask implements RefreshScheduler.Task {
+        @Override
+        public long run() {
+            if (discoveryClient.getLastRefreshTime() < 0) {
+                return READY_CHECK_INTERVAL_IN_MILLIS;
             }
-            int webSocketPortToRegister = useSecure ? secureWebsocketPort : websocketPort;
 
-            EurekaServerInstance server = new EurekaServerInstance(serviceName, instance.getIpAddress(), host, useSecure, instance.getPort(), webSocketPortToRegister, instance);
-            server.setAvailable(ServiceStatus.UP == instance.getStatus());
-            servers.add(server);
+            try {
+                if (hasServerListListeners()) {
+                    getListOfServers();
+                }
+            } catch (Exception e) {
+                logger.error("Exception publishing server instances for service <" + serviceName + ">", e);
+            }
+            ready.set(null);
+            return -1;
+        }
+    }
+
+    private static class CachedInstance {
+        private final long lastUpdatedTimestamp;
+        private EurekaServerInstance server;
+
+        private CachedInstance(long lastUpdatedTimestamp, EurekaServerInstance server) {
+            this.lastUpdatedTimestamp = lastUpdatedTimestamp;
+            this.server = server;
         }
-        return servers;
     }
 }
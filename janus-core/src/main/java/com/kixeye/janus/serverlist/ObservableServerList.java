@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+/**
+ * A {@link ServerList} which pushes changes to its server instances to registered listeners
+ * as they happen, rather than requiring callers to poll and diff {@link #getListOfServers()}.
+ */
+public interface ObservableServerList extends ServerList {
+
+    /**
+     * Registers a listener to be notified of changes to the server instances.
+     * @param listener the listener
+     */
+    void addServerListListener(ServerListListener listener);
+
+    /**
+     * Removes a previously registered listener.
+     * @param listener the listener
+     */
+    void removeServerListListener(ServerListListener listener);
+}
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * A {@link ServerList} which serves the server instances of a seed {@link ServerList} (such as a
+ * {@link ConfigServerList}) until another {@link ServerList} is ready, and from then on serves that
+ * server list's server instances.
+ * <p/>
+ * Used to let slow to initialize server lists, such as an asynchronously constructed {@link EurekaServerList},
+ * be created without blocking while still having server instances to serve in the meantime. The switch over
+ * is pushed to registered {@link ServerListListener}s, as are any later changes pushed by the server list.
+ * <p/>
+ * If the server list is an {@link ObservableServerList}, this only listens to it while listeners are registered
+ * here, so that removing the last listener (e.g. closing {@link com.kixeye.janus.Janus}) lets it stop watching for changes.
+ */
+public class SeededServerList extends AbstractObservableServerList {
+
+    private final ServerList serverList;
+    private final ListenableFuture<?> ready;
+    private final ServerList seedServerList;
+
+    // republishes the changes pushed by the server list once it is ready
+    private final ServerListListener serverListListener = new ServerListListener() {
+        @Override
+        public void onServerListChanged(ServerListDelta delta) {
+            if (isReady()) {
+                publish(getServerListServers());
+            }
+        }
+    };
+    private final Object listenerLock = new Object();
+    // guarded by listenerLock
+    private boolean listening = false;
+
+    /**
+     * @param serverList the server list to serve once it is ready
+     * @param ready a future which completes once the server list is ready
+     * @param seedServerList the server list to serve until then
+     */
+    public SeededServerList(final ServerList serverList, ListenableFuture<?> ready, ServerList seedServerList) {
+        this.serverList = Preconditions.checkNotNull(serverList, "'serverList' cannot be null.");
+        this.ready = Preconditions.checkNotNull(ready, "'ready' cannot be null.");
+        this.seedServerList = Preconditions.checkNotNull(seedServerList, "'seedServerList' cannot be null.");
+
+        publish(seedServerList.getListOfServers());
+
+        ready.addListener(new Runnable() {
+            @Override
+            public void run() {
+                publish(serverList.getListOfServers());
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Registers a listener, and starts listening to the server list if it is an {@link ObservableServerList}.
+     * @param listener the listener
+     */
+    @Override
+    public void addServerListListener(ServerListListener listener) {
+        synchronized (listenerLock) {
+            super.addServerListListener(listener);
+            if (!listening && serverList instanceof ObservableServerList) {
+                ((ObservableServerList) serverList).addServerListListener(serverListListener);
+                listening = true;
+            }
+        }
+    }
+
+    /**
+     * Removes a listener, and stops listening to the server list once no listeners are left.
+     * @param listener the listener
+     */
+    @Override
+    public void removeServerListListener(ServerListListener listener) {
+        synchronized (listenerLock) {
+            super.removeServerListListener(listener);
+            if (listening && !hasServerListListeners()) {
+                ((ObservableServerList) serverList).removeServerListListener(serverListListener);
+                listening = false;
+            }
+        }
+    }
+
+    /**
+     * Is the server list ready, i.e. no longer serving from the seed server list?
+     * @return whether or not the server list is ready
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * gets the service cluster name
+     *
+     * @return the service cluster name
+     */
+    @Override
+    public String getServiceName() {
+        return serverList.getServiceName();
+    }
+
+    /**
+     * gets the server instances of the server list if it is ready, the seed server list otherwise
+     *
+     * @return the list of server instances
+     */
+    @Override
+    public List<ServerInstance> getListOfServers() {
+        if (isReady()) {
+            return publish(serverList.getListOfServers());
+        }
+        return publish(seedServerList.getListOfServers());
+    }
+
+    private List<ServerInstance> getServerListServers() {
+        // avoid polling a server list which has just pushed its latest server instances
+        if (serverList instanceof AbstractObservableServerList) {
+            return ((AbstractObservableServerList) serverList).getPublishedServers();
+        }
+        return serverList.getListOfServers();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * The server instances added to, removed from and changed within a service cluster
+ * between two versions of an {@link ObservableServerList}.
+ * <p/>
+ * A server instance which was replaced by a different server instance with the same id is both removed
+ * and added, so removals should be applied before additions.
+ */
+public class ServerListDelta {
+
+    private final List<ServerInstance> added;
+    private final List<ServerInstance> removed;
+    private final List<ServerInstance> changed;
+
+    /**
+     * @param added server instances new to the service cluster
+     * @param removed server instances no longer in the service cluster
+     * @param changed server instances whose availability or other information has changed
+     */
+    public ServerListDelta(List<ServerInstance> added, List<ServerInstance> removed, List<ServerInstance> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * getter for added
+     * @return server instances new to the service cluster
+     */
+    public List<ServerInstance> getAdded() {
+        return added;
+    }
+
+    /**
+     * getter for removed
+     * @return server instances no longer in the service cluster
+     */
+    public List<ServerInstance> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * getter for changed
+     * @return server instances whose availability or other information has changed
+     */
+    public List<ServerInstance> getChanged() {
+        return changed;
+    }
+
+    /**
+     * Does this delta contain any changes?
+     * @return true if nothing was added, removed or changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+/**
+ * A listener which is notified when the server instances of an {@link ObservableServerList} change.
+ */
+public interface ServerListListener {
+
+    /**
+     * called when server instances are added to, removed from or changed within a service cluster.
+     *
+     * @param delta the server instances which were added, removed or changed
+     */
+    void onServerListChanged(ServerListDelta delta);
+}
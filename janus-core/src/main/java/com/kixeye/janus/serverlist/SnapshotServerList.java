@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * A {@link ServerList} backed by an on-disk snapshot of the last known good server instances of a service
+ * cluster, along with their availability.
+ * <p/>
+ * {@link com.kixeye.janus.Janus} saves the snapshot whenever its server instances change, so that on restart
+ * it can serve traffic from the snapshot (see {@link SeededServerList}) while discovery is slow or unreachable.
+ * <p/>
+ * The snapshot uses a compact binary format, and is written to a temporary file which is then atomically
+ * moved into place so readers never see a partially written snapshot.
+ */
+public class SnapshotServerList implements ServerList {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotServerList.class);
+
+    private static final int MAGIC = 0x4A4E5353;
+    private static final byte VERSION = 1;
+
+    private final String serviceName;
+    private final File file;
+
+    // guarded by this
+    private List<ServerInstance> servers;
+    private byte[] lastSnapshot;
+
+    /**
+     * @param serviceName the service cluster name
+     * @param file the snapshot file
+     */
+    public SnapshotServerList(String serviceName, File file) {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(serviceName), "'serviceName' cannot be null or empty.");
+        this.serviceName = serviceName;
+        this.file = Preconditions.checkNotNull(file, "'file' cannot be null.");
+    }
+
+    /**
+     * gets the service cluster name
+     *
+     * @return the service cluster name
+     */
+    @Override
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * gets the server instances from the snapshot, loading it on first use. Empty if there is no
+     * usable snapshot.
+     *
+     * @return list of server instances
+     */
+    @Override
+    public synchronized List<ServerInstance> getListOfServers() {
+        if (servers == null) {
+            servers = load();
+        }
+        return servers;
+    }
+
+    /**
+     * Saves the given server instances as the snapshot, if they differ from the last saved (or loaded) snapshot.
+     *
+     * @param instances the server instances to save
+     * @return true if the snapshot was written, false otherwise
+     */
+    public synchronized boolean save(Collection<ServerInstance> instances) {
+        try {
+            byte[] snapshot = serialize(instances);
+            if (Arrays.equals(snapshot, lastSnapshot)) {
+                return false;
+            }
+
+            Path target = file.toPath();
+            Path parent = target.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getName(), ".tmp");
+            try {
+                Files.write(tmp, snapshot);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            lastSnapshot = snapshot;
+            return true;
+        } catch (IOException e) {
+            logger.warn("Unable to save server list snapshot for service <" + serviceName + "> to " + file, e);
+            return false;
+        }
+    }
+
+    private List<ServerInstance> load() {
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            byte[] snapshot = Files.readAllBytes(file.toPath());
+            List<ServerInstance> loaded = deserialize(snapshot);
+            lastSnapshot = snapshot;
+            logger.info("Loaded {} server instances for service <{}> from snapshot {}", loaded.size(), serviceName, file);
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("Unable to load server list snapshot for service <" + serviceName + "> from " + file, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private byte[] serialize(Collection<ServerInstance> instances) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + instances.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(serviceName);
+        out.writeInt(instances.size());
+        for (ServerInstance s : instances) {
+            out.writeUTF(s.getId());
+            out.writeUTF(s.getHost());
+            out.writeBoolean(s.isSecure());
+            out.writeInt(s.getPort());
+            out.writeInt(s.getWebsocketPort());
+            // only discovery's view, health checks and the circuit breaker are local state which starts over on restart
+            out.writeBoolean(s.isDiscoveryAvailable());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private List<ServerInstance> deserialize(byte[] snapshot) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Unrecognized snapshot format");
+        }
+        String snapshotServiceName = in.readUTF();
+        if (!serviceName.equals(snapshotServiceName)) {
+            throw new IOException("Snapshot is for service <" + snapshotServiceName + ">");
+        }
+
+        int count = in.readInt();
+        List<ServerInstance> loaded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            String host = in.readUTF();
+            boolean secure = in.readBoolean();
+            int port = in.readInt();
+            int websocketPort = in.readInt();
+            ServerInstance server = new ServerInstance(serviceName, id, host, secure, port, websocketPort);
+            server.setAvailable(in.readBoolean());
+            loaded.add(server);
+        }
+        return Collections.unmodifiableList(loaded);
+    }
+}
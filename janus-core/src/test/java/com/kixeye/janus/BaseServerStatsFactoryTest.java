@@ -19,6 +19,7 @@
  */
 package com.kixeye.janus;
 
+import java.util.concurrent.TimeUnit;
 
 import com.codahale.metrics.MetricRegistry;
 import com.kixeye.janus.ServerInstance;
@@ -41,6 +42,89 @@ public class BaseServerStatsFactoryTest {
         Assert.assertEquals(0, stats.getSentMessagesPerSecond(), 0);
     }
 
+    @Test
+    public void lightweightConstructionTest() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ServerStatsFactory factory = new ServerStatsFactory(LightweightServerStats.class, metricRegistry);
+        ServerInstance server = new ServerInstance("test","http://localhost");
+        ServerStats stats = factory.createServerStats(server);
+        Assert.assertTrue(stats instanceof LightweightServerStats);
+
+        stats.incrementOpenRequests();
+        stats.incrementOpenRequests();
+        stats.decrementOpenRequests();
+        stats.incrementOpenSessions();
+        stats.incrementSentMessages();
+        stats.incrementReceivedMessages();
+        stats.recordLatency(10);
+        Assert.assertEquals(1, stats.getOpenRequestCount());
+        Assert.assertEquals(1, stats.getOpenSessionsCount());
+        Assert.assertEquals(0, stats.getReceivedMessagesPerSecond(), 0);
+        Assert.assertEquals(0, stats.getSentMessagesPerSecond(), 0);
+        Assert.assertFalse(metricRegistry.getGauges().isEmpty());
+        Assert.assertTrue(metricRegistry.getMeters().isEmpty());
+        Assert.assertTrue(metricRegistry.getCounters().isEmpty());
+
+        server.setAvailable(true);
+        for (int i = 0; i < 10; i++) {
+            stats.incrementErrors();
+        }
+        Assert.assertTrue(server.isShortCircuited());
+    }
+
+    @Test
+    public void lightweightRecordingTest() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ServerStatsFactory factory = new ServerStatsFactory(LightweightServerStats.class, metricRegistry);
+        ServerInstance server = new ServerInstance("test","http://localhost");
+        ManualClock clock = new ManualClock();
+        server.setClock(clock);
+        ServerStats stats = factory.createServerStats(server);
+
+        // latencies only go into the totals, and are no outcome
+        stats.recordLatency(10);
+        stats.recordLatencyNanos(5000000);
+        Assert.assertEquals(2, stats.getLatencyCount());
+        Assert.assertEquals(15000000, stats.getLatencyTotalNanos());
+        Assert.assertEquals(0, stats.getSuccessCount());
+        stats.recordSuccess();
+        Assert.assertEquals(1, stats.getSuccessCount());
+        Assert.assertEquals(0, stats.getLatencyRecorder().getCount());
+        Assert.assertTrue(metricRegistry.getHistograms().isEmpty());
+
+        // no histogram or moving average is allocated per server instance
+        ServerStats other = factory.createServerStats(new ServerInstance("test","http://localhost:8080"));
+        Assert.assertSame(stats.getLatencyRecorder(), other.getLatencyRecorder());
+        Assert.assertSame(stats.getPeakEwma(), other.getPeakEwma());
+
+        // rates are measured on the server instance's clock
+        Assert.assertEquals(0, stats.getSentMessagesPerSecond(), 0);
+        for (int i = 0; i < 20; i++) {
+            stats.incrementSentMessages();
+        }
+        clock.advance(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, stats.getSentMessagesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void latencyRecorderRunsOnServerClockTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerInstance server = new ServerInstance("test","http://localhost");
+        ManualClock clock = new ManualClock();
+        server.setClock(clock);
+        ServerStats stats = factory.createServerStats(server);
+
+        stats.recordLatency(10);
+        Assert.assertEquals(1, stats.getLatencyRecorder().getCount());
+
+        // the next interval only completes once the server instance's clock moves on
+        stats.recordLatency(10);
+        stats.recordLatency(10);
+        Assert.assertEquals(1, stats.getLatencyRecorder().getCount());
+        clock.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(2, stats.getLatencyRecorder().getCount());
+    }
+
     @Test
     public void forceExceptionTest() {
         ServerStatsFactory factory = new ServerStatsFactory(BadServerStats.class,new MetricRegistry());
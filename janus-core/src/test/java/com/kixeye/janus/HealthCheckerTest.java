@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
+import com.kixeye.janus.serverlist.ConstServerList;
+
+public class HealthCheckerTest {
+    private static final String VIP_TEST = "healthservice";
+
+    @Test
+    public void newServerWaitsForHealthCheckTest() throws Exception {
+        final CountDownLatch checked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                release.await();
+                checked.countDown();
+                return true;
+            }
+        }, 1);
+        try {
+            Janus janus = Janus.builder(VIP_TEST)
+                    .withServerList(new ConstServerList(VIP_TEST, "http://localhost:8080"))
+                    .withLoadBalancer(new RandomLoadBalancer())
+                    .withStatsFactory(new ServerStatsFactory(ServerStats.class, new MetricRegistry()))
+                    .withHealthChecker(healthChecker)
+                    .build();
+            Assert.assertNull(janus.getServer());
+
+            release.countDown();
+            Assert.assertTrue(checked.await(1, TimeUnit.SECONDS));
+            waitForHealthy(janus, true);
+            janus.close();
+        } finally {
+            healthChecker.close();
+        }
+    }
+
+    @Test
+    public void failedHealthChecksTest() throws Exception {
+        final AtomicBoolean healthy = new AtomicBoolean(true);
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                if (!healthy.get()) {
+                    throw new Exception("unhealthy");
+                }
+                return true;
+            }
+        }, 1);
+        try {
+            ServerInstance instance = new ServerInstance(VIP_TEST, "http://localhost:8080");
+            instance.setAvailable(true);
+
+            // two failed checks in a row mark the server instance unhealthy
+            healthy.set(false);
+            checkAndWait(healthChecker, instance);
+            Assert.assertTrue(instance.isAvailable());
+            checkAndWait(healthChecker, instance);
+            Assert.assertFalse(instance.isAvailable());
+            Assert.assertFalse(instance.isUp());
+
+            // a single passed check marks it healthy again
+            healthy.set(true);
+            checkAndWait(healthChecker, instance);
+            Assert.assertTrue(instance.isAvailable());
+        } finally {
+            healthChecker.close();
+        }
+    }
+
+    @Test
+    public void oneCheckAtATimeTest() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                checks.incrementAndGet();
+                release.await();
+                return true;
+            }
+        }, 4);
+        try {
+            ServerInstance instance = new ServerInstance(VIP_TEST, "http://localhost:8080");
+            for (int i = 0; i < 10; i++) {
+                healthChecker.check(instance);
+            }
+            Thread.sleep(100);
+            release.countDown();
+            Thread.sleep(100);
+            Assert.assertEquals(1, checks.get());
+        } finally {
+            healthChecker.close();
+        }
+    }
+
+    @Test
+    public void removedAndAddedServerCheckedOnceAtATimeTest() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                checks.incrementAndGet();
+                release.await();
+                return true;
+            }
+        }, 4);
+        try {
+            ServerInstance instance = new ServerInstance(VIP_TEST, "http://localhost:8080");
+            healthChecker.check(instance);
+            healthChecker.remove(instance);
+            healthChecker.check(new ServerInstance(VIP_TEST, "http://localhost:8080"));
+            Thread.sleep(100);
+            release.countDown();
+            Thread.sleep(100);
+            Assert.assertEquals(1, checks.get());
+        } finally {
+            healthChecker.close();
+        }
+    }
+
+    @Test
+    public void checksFallDuePerServerTest() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                checks.incrementAndGet();
+                return true;
+            }
+        }, 1);
+        try {
+            ManualClock clock = new ManualClock();
+            ServerInstance instance = new ServerInstance(VIP_TEST, "http://localhost:8080");
+            instance.setClock(clock);
+            List<ServerStats> servers = ImmutableList.of(new ServerStatsFactory(ServerStats.class, new MetricRegistry()).createServerStats(instance));
+
+            // a server instance which was never checked is due straight away
+            healthChecker.check(servers);
+            Thread.sleep(50);
+            Assert.assertEquals(1, checks.get());
+
+            // and then only once its (jittered) interval has passed
+            healthChecker.check(servers);
+            clock.advance(healthChecker.getInterval() / 2, TimeUnit.MILLISECONDS);
+            healthChecker.check(servers);
+            Thread.sleep(50);
+            Assert.assertEquals(1, checks.get());
+
+            clock.advance(healthChecker.getInterval(), TimeUnit.MILLISECONDS);
+            healthChecker.check(servers);
+            Thread.sleep(50);
+            Assert.assertEquals(2, checks.get());
+        } finally {
+            healthChecker.close();
+        }
+    }
+
+    private static void checkAndWait(HealthChecker healthChecker, ServerInstance instance) throws InterruptedException {
+        healthChecker.check(instance);
+        // wait for the check to finish, a new check is only accepted once the last one is done
+        Thread.sleep(50);
+    }
+
+    @Test
+    public void sharedServerStaysAvailableTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                release.await();
+                return true;
+            }
+        }, 1);
+        try {
+            ConstServerList serverList = new ConstServerList(VIP_TEST, "http://localhost:8080");
+            Janus first = Janus.builder(VIP_TEST)
+                    .withServerList(serverList)
+                    .withLoadBalancer(new RandomLoadBalancer())
+                    .withStatsFactory(new ServerStatsFactory(ServerStats.class, new MetricRegistry()))
+                    .build();
+            Assert.assertNotNull(first.getServer());
+
+            // the second Janus instance must not pull the server out from under the first while it is checked
+            Janus second = Janus.builder(VIP_TEST)
+                    .withServerList(serverList)
+                    .withLoadBalancer(new RandomLoadBalancer())
+                    .withStatsFactory(new ServerStatsFactory(ServerStats.class, new MetricRegistry()))
+                    .withHealthChecker(healthChecker)
+                    .build();
+            Assert.assertNotNull(second.getServer());
+            Assert.assertNotNull(first.getServer());
+
+            release.countDown();
+            second.close();
+            first.close();
+        } finally {
+            release.countDown();
+            healthChecker.close();
+        }
+    }
+
+    private static void waitForHealthy(Janus janus, boolean healthy) throws InterruptedException {
+        for (int i = 0; i < 100 && (janus.getServer() != null) != healthy; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(healthy, janus.getServer() != null);
+    }
+}
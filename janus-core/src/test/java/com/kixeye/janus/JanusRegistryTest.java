@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
+import com.kixeye.scout.eureka.EurekaServiceDiscoveryClient;
+import com.netflix.config.ConfigurationManager;
+
+public class JanusRegistryTest {
+    private static final String VIP_ONE = "registryservice1";
+    private static final String VIP_TWO = "registryservice2";
+
+    @Test
+    public void registrySharesResourcesTest() {
+        ConfigurationManager.getConfigInstance().setProperty("janus.listOfServers." + VIP_ONE, "http://localhost:8080");
+        ConfigurationManager.getConfigInstance().setProperty("janus.listOfServers." + VIP_TWO, "http://localhost:8180");
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        RefreshScheduler refreshScheduler = new RefreshScheduler(1);
+        JanusRegistry registry = JanusRegistry.newBuilder()
+                .withMetricRegistry(metricRegistry)
+                .withRefreshScheduler(refreshScheduler)
+                .build();
+        try {
+            Janus one = registry.getJanus(VIP_ONE);
+            Assert.assertSame(one, registry.getJanus(VIP_ONE));
+            Assert.assertEquals(VIP_ONE, one.getServiceName());
+            Assert.assertEquals("localhost:8080", one.getServer().getServerInstance().getId());
+
+            // customized instances still share the registry's resources
+            Janus two = registry.register(registry.builder(VIP_TWO).withLoadBalancer(new RandomLoadBalancer()).build());
+            Assert.assertSame(two, registry.getJanus(VIP_TWO));
+            Assert.assertEquals("localhost:8180", two.getServer().getServerInstance().getId());
+
+            Assert.assertFalse(metricRegistry.getMetrics().isEmpty());
+            Assert.assertSame(metricRegistry, registry.getMetricRegistry());
+        } finally {
+            registry.close();
+            refreshScheduler.close();
+        }
+    }
+
+    @Test
+    public void registryWatchesEurekaOnItsSchedulerTest() {
+        EurekaServiceDiscoveryClient client = mock(EurekaServiceDiscoveryClient.class);
+        when(client.getLastRefreshTime()).thenReturn(-1L);
+
+        ManualRefreshScheduler refreshScheduler = new ManualRefreshScheduler();
+        JanusRegistry registry = JanusRegistry.newBuilder()
+                .withEureka(client, false, false)
+                .withRefreshScheduler(refreshScheduler)
+                .withRefreshIntervalInMillis(1000)
+                .build();
+        try {
+            registry.getJanus(VIP_ONE);
+            verify(client, never()).describe(VIP_ONE);
+
+            // the first refresh is only picked up by the registry's scheduler
+            when(client.getLastRefreshTime()).thenReturn(1000L);
+            refreshScheduler.runTasks();
+            verify(client, atLeastOnce()).describe(VIP_ONE);
+            Assert.assertEquals(1000, registry.getRefreshIntervalInMillis());
+        } finally {
+            registry.close();
+        }
+    }
+}
@@ -20,18 +20,31 @@
 package com.kixeye.janus;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.SettableFuture;
 import com.kixeye.janus.Janus.Builder;
 import com.kixeye.janus.loadbalancer.LoadBalancer;
 import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
 import com.kixeye.janus.loadbalancer.ZoneAwareLoadBalancer;
 import com.kixeye.janus.serverlist.ConfigServerList;
 import com.kixeye.janus.serverlist.ConstServerList;
+import com.kixeye.janus.serverlist.SeededServerList;
+import com.kixeye.janus.serverlist.ServerList;
+import com.kixeye.janus.serverlist.SnapshotServerList;
 import com.netflix.config.ConfigurationManager;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 //import com.kixeye.janus.Janus.Builder;
 
 public class JanusTest {
@@ -108,19 +121,17 @@ public class JanusTest {
         ServerStats stats2 = janus.getServer();
         Assert.assertNull(stats2);
 
-        // wait 1 seconds and the instance should return to normal
+        // wait 1 seconds and the instance should be half-open
         Thread.sleep(1005);
         Assert.assertEquals(stats.getServerInstance().isShortCircuited(), false);
+        Assert.assertEquals(stats.getServerInstance().isHalfOpen(), true);
 
-        // we should get a server again since the short circuit expired
+        // we should get the server again as a probe since the short circuit expired, but only one probe at a time
         stats = janus.getServer();
         Assert.assertNotNull(stats);
+        Assert.assertNull(janus.getServer());
 
-        // mark 3 errors and the 3rd should cause the server instance to short circuit again
-        stats.incrementErrors();
-        Assert.assertEquals(stats.getServerInstance().isShortCircuited(), false);
-        stats.incrementErrors();
-        Assert.assertEquals(stats.getServerInstance().isShortCircuited(), false);
+        // a failed probe should cause the server instance to short circuit again
         stats.incrementErrors();
         Assert.assertEquals(stats.getServerInstance().isShortCircuited(), true);
 
@@ -128,6 +139,227 @@ public class JanusTest {
         Assert.assertTrue(stats.getServerInstance().getCircuitBreakerRemainingTime() > 1.0);
     }
 
+    @Test
+    public void halfOpenTest() throws InterruptedException {
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST,"http://localhost:8080"),
+                new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class,new MetricRegistry()) );
+
+        ServerStats stats = janus.getServer();
+        stats.getServerInstance().tripCircuitBreaker();
+        Assert.assertNull(janus.getServer());
+        Thread.sleep(1005);
+
+        // full traffic only returns after 3 successful probes
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(ServerInstance.CircuitBreakerState.HALF_OPEN, stats.getServerInstance().getCircuitBreakerState());
+            Assert.assertSame(stats, janus.getServer());
+            Assert.assertNull(janus.getServer());
+            // the latency alone is no outcome, so the probe is still outstanding
+            stats.recordLatency(1);
+            Assert.assertNull(janus.getServer());
+            stats.recordSuccess();
+        }
+        Assert.assertEquals(ServerInstance.CircuitBreakerState.CLOSED, stats.getServerInstance().getCircuitBreakerState());
+        Assert.assertSame(stats, janus.getServer());
+        Assert.assertSame(stats, janus.getServer());
+    }
+
+    @Test
+    public void availabilityChangeTest() {
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST,"http://localhost:8080"),
+                new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class,new MetricRegistry()) );
+
+        ServerStats stats = janus.getServer();
+        Assert.assertNotNull(stats);
+
+        // marking the instance unavailable should remove it from selection immediately
+        stats.getServerInstance().setAvailable(false);
+        Assert.assertNull(janus.getServer());
+
+        // and marking it available again should bring it back
+        stats.getServerInstance().setAvailable(true);
+        Assert.assertSame(stats, janus.getServer());
+    }
+
+    @Test
+    public void availabilityListenersNotifiedOutsideLockTest() throws Exception {
+        final ServerInstance instance = new ServerInstance(VIP_TEST, "http://localhost:8080");
+        final AtomicBoolean lockFree = new AtomicBoolean();
+        instance.addListener(new ServerInstanceListener() {
+            @Override
+            public void onAvailabilityChange(boolean isAvailable) {
+                // another thread taking the instance's lock must not wait for the listener to return
+                Thread probe = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        instance.tryAcquireProbe();
+                        lockFree.set(true);
+                    }
+                });
+                probe.start();
+                try {
+                    probe.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        instance.setAvailable(true);
+        Assert.assertTrue(lockFree.get());
+    }
+
+    @Test
+    public void backgroundRefreshTest() {
+        final List<ServerInstance> instances = new CopyOnWriteArrayList<>();
+        instances.add(newAvailableInstance("http://localhost:8080"));
+        ServerList serverList = new ServerList() {
+            @Override
+            public String getServiceName() {
+                return VIP_TEST;
+            }
+
+            @Override
+            public List<ServerInstance> getListOfServers() {
+                return instances;
+            }
+        };
+
+        ManualRefreshScheduler scheduler = new ManualRefreshScheduler();
+        Janus janus = Janus.builder(VIP_TEST)
+                .withServerList(serverList)
+                .withLoadBalancer(new RandomLoadBalancer())
+                .withStatsFactory(new ServerStatsFactory(ServerStats.class,new MetricRegistry()))
+                .withRefreshIntervalInMillis(50)
+                .withBackgroundRefresh(scheduler)
+                .build();
+        try {
+            Assert.assertEquals(8080, janus.getServer().getServerInstance().getPort());
+
+            // getServer() never refreshes inline, a new instance is only picked up by the background refresh
+            instances.add(newAvailableInstance("http://localhost:8180"));
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(8080, janus.getServer().getServerInstance().getPort());
+            }
+            scheduler.runTasks();
+
+            boolean foundNewInstance = false;
+            for (int i = 0; i < 100 && !foundNewInstance; i++) {
+                foundNewInstance = janus.getServer().getServerInstance().getPort() == 8180;
+            }
+            Assert.assertTrue(foundNewInstance);
+        } finally {
+            janus.close();
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void snapshotSavedInBackgroundTest() throws Exception {
+        File directory = Files.createTempDirectory("janus").toFile();
+        File file = new File(directory, VIP_TEST + ".snapshot");
+        directory.deleteOnExit();
+        file.deleteOnExit();
+
+        SettableFuture<Void> ready = SettableFuture.create();
+        ManualRefreshScheduler scheduler = new ManualRefreshScheduler();
+        Janus janus = Janus.builder(VIP_TEST)
+                .withServerList(new SeededServerList(new ConstServerList(VIP_TEST, "http://localhost:8180"), ready, new ConstServerList(VIP_TEST, "http://localhost:8080")))
+                .withStatsFactory(new ServerStatsFactory(ServerStats.class, new MetricRegistry()))
+                .withSnapshotDirectory(directory)
+                .withBackgroundRefresh(scheduler)
+                .build();
+        try {
+            // the change is pushed while the server list holds its lock, so the snapshot is only written by the scheduler
+            ready.set(null);
+            Assert.assertEquals(8180, janus.getServer().getServerInstance().getPort());
+            Assert.assertFalse(file.exists());
+
+            scheduler.runTasks();
+            List<ServerInstance> saved = new SnapshotServerList(VIP_TEST, file).getListOfServers();
+            Assert.assertEquals(1, saved.size());
+            Assert.assertEquals(8180, saved.get(0).getPort());
+        } finally {
+            janus.close();
+        }
+    }
+
+    @Test
+    public void removedServerMetricsTest() {
+        String vip = "metricservice";
+        String property = ConfigServerList.PROPERTY_NAME_PREFIX + "." + vip;
+        ConfigurationManager.getConfigInstance().setProperty(property, "http://localhost:8080,http://localhost:8180");
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Janus janus = new Janus(
+                vip,
+                new ConfigServerList(vip),
+                new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, metricRegistry));
+        try {
+            Assert.assertTrue(metricRegistry.getNames().contains(vip + ".localhost:8180.open-requests"));
+
+            // metrics of a removed server instance are removed with it
+            ConfigurationManager.getConfigInstance().setProperty(property, "http://localhost:8080");
+            for (String name : metricRegistry.getNames()) {
+                Assert.assertFalse(name.startsWith(vip + ".localhost:8180."));
+            }
+            Assert.assertTrue(metricRegistry.getNames().contains(vip + ".localhost:8080.open-requests"));
+        } finally {
+            janus.close();
+            ConfigurationManager.getConfigInstance().clearProperty(property);
+        }
+        Assert.assertTrue(metricRegistry.getNames().isEmpty());
+    }
+
+    @Test
+    public void sharedServerListTest() {
+        ServerList serverList = new ConstServerList(VIP_TEST, "http://localhost:8080");
+        Janus first = new Janus(VIP_TEST, serverList, new RandomLoadBalancer(), new ServerStatsFactory(ServerStats.class, new MetricRegistry()));
+        Janus second = new Janus(VIP_TEST, serverList, new RandomLoadBalancer(), new ServerStatsFactory(ServerStats.class, new MetricRegistry()));
+        ServerStats stat = first.getServer();
+        Assert.assertNotNull(second.getServer());
+
+        // both see the shared instance being short circuited
+        stat.getServerInstance().tripCircuitBreaker();
+        Assert.assertNull(first.getServer());
+        Assert.assertNull(second.getServer());
+
+        // and a closed one stops listening
+        second.close();
+        Assert.assertTrue(serverList.getListOfServers().get(0).hasListeners());
+        first.close();
+        Assert.assertFalse(serverList.getListOfServers().get(0).hasListeners());
+    }
+
+    @Test
+    public void sharedServerMetricsTest() {
+        String vip = "sharedmetricservice";
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Janus first = new Janus(vip, new ConstServerList(vip, "http://localhost:8080"), new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, metricRegistry));
+        Janus second = new Janus(vip, new ConstServerList(vip, "http://localhost:8080"), new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, metricRegistry));
+
+        // both report through the same counters
+        first.getServer().incrementOpenRequests();
+        second.getServer().incrementOpenRequests();
+        Assert.assertEquals(2, metricRegistry.getCounters().get(vip + ".localhost:8080.open-requests").getCount());
+
+        // and the metrics survive until the last one is closed
+        first.close();
+        Assert.assertTrue(metricRegistry.getNames().contains(vip + ".localhost:8080.open-requests"));
+        Assert.assertTrue(metricRegistry.getNames().contains(vip + ".localhost:8080.short-circuit-time-remaining"));
+        second.close();
+        Assert.assertTrue(metricRegistry.getNames().isEmpty());
+    }
+
     @Test
     public void noServersTest() {
         Janus janus = new Janus(
@@ -206,6 +438,92 @@ public class JanusTest {
         assertFieldType(janus, LoadBalancer.class, ZoneAwareLoadBalancer.class);
     }
 
+    @Test
+    public void shortCircuitWithClockTest() {
+        ManualClock clock = new ManualClock();
+        Janus janus = Janus.builder(VIP_TEST)
+                .withServers("http://localhost:8080")
+                .withClock(clock)
+                .build();
+
+        ServerStats stats = janus.getServer();
+        Assert.assertSame(clock, stats.getServerInstance().getClock());
+        stats.getServerInstance().tripCircuitBreaker();
+        Assert.assertNull(janus.getServer());
+
+        // the short circuit only expires when the clock says so
+        clock.advance(999, TimeUnit.MILLISECONDS);
+        Assert.assertNull(janus.getServer());
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        Assert.assertSame(stats, janus.getServer());
+        Assert.assertTrue(stats.getServerInstance().isHalfOpen());
+    }
+
+    @Test
+    public void getServerWithClockReadingTest() {
+        final AtomicInteger reads = new AtomicInteger();
+        ManualClock clock = new ManualClock() {
+            @Override
+            public long nanoTime() {
+                reads.incrementAndGet();
+                return super.nanoTime();
+            }
+        };
+        Janus janus = Janus.builder(VIP_TEST)
+                .withServers("http://localhost:8080")
+                .withClock(clock)
+                .withRandomLoadBalancing()
+                .build();
+        long now = clock.nanoTime();
+        Assert.assertNotNull(janus.getServer(null, now));
+
+        // a caller timing its requests reads the clock once for both, Janus doesn't read it again
+        reads.set(0);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(janus.getServer(null, clock.nanoTime()));
+        }
+        Assert.assertEquals(10, reads.get());
+    }
+
+    @Test
+    public void panicModeTest() {
+        ConfigurationManager.getConfigInstance().setProperty(Janus.PANIC_THRESHOLD, 0.5);
+        try {
+            Janus janus = new Janus(
+                    VIP_TEST,
+                    new ConstServerList(VIP_TEST, "http://localhost:8080", "http://localhost:8180", "http://localhost:8280"),
+                    new RandomLoadBalancer(),
+                    new ServerStatsFactory(ServerStats.class, new MetricRegistry()));
+            ServerStats stats = janus.getServer();
+            Assert.assertFalse(janus.isPanicMode());
+
+            // one of three short circuited is still healthy enough
+            stats.getServerInstance().tripCircuitBreaker();
+            for (int i = 0; i < 100; i++) {
+                Assert.assertNotSame(stats, janus.getServer());
+            }
+            Assert.assertFalse(janus.isPanicMode());
+
+            // two of three short circuited spreads the load over all of them
+            ServerStats other = janus.getServer();
+            other.getServerInstance().tripCircuitBreaker();
+            Assert.assertTrue(janus.isPanicMode());
+            Set<ServerStats> chosen = new HashSet<>();
+            for (int i = 0; i < 100; i++) {
+                chosen.add(janus.getServer());
+            }
+            Assert.assertEquals(3, chosen.size());
+        } finally {
+            ConfigurationManager.getConfigInstance().clearProperty(Janus.PANIC_THRESHOLD);
+        }
+    }
+
+    private ServerInstance newAvailableInstance(String url) {
+        ServerInstance instance = new ServerInstance(VIP_TEST, url);
+        instance.setAvailable(true);
+        return instance;
+    }
+
     //used to assert that a field is of the expected type
     private void assertFieldType(Janus janus, Class<?> interfaceClass, Class<?> expectedClass){
     	Field field = null;
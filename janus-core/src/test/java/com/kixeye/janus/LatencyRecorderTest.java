@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class LatencyRecorderTest {
+
+    @Before
+    public void setConfiguration() {
+        ConfigurationManager.getConfigInstance().setProperty(LatencyRecorder.LATENCY_INTERVAL_IN_MILLIS, 0);
+    }
+
+    @After
+    public void clearConfiguration() {
+        ConfigurationManager.getConfigInstance().clearProperty(LatencyRecorder.LATENCY_INTERVAL_IN_MILLIS);
+    }
+
+    @Test
+    public void percentilesTest() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Assert.assertEquals(0, recorder.getCount());
+
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        Assert.assertEquals(1000, recorder.getCount());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(500), recorder.getP50(), TimeUnit.MICROSECONDS.toNanos(5));
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(990), recorder.getP99(), TimeUnit.MICROSECONDS.toNanos(10));
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(999), recorder.getP999(), TimeUnit.MICROSECONDS.toNanos(10));
+
+        // an interval without latencies keeps the previous percentiles
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(500), recorder.getP50(), TimeUnit.MICROSECONDS.toNanos(5));
+
+        // a new interval only reflects its own latencies
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(1, recorder.getCount());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), recorder.getP50(), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
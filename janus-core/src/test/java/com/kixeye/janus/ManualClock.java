@@ -0,0 +1,38 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link JanusClock} which only moves when told to.
+ */
+public class ManualClock extends JanusClock {
+    private volatile long nanoTime = TimeUnit.SECONDS.toNanos(1000);
+
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    public void advance(long duration, TimeUnit unit) {
+        nanoTime += unit.toNanos(duration);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link RefreshScheduler} which only runs its tasks when told to, ignoring their delays.
+ */
+public class ManualRefreshScheduler extends RefreshScheduler {
+    private final List<Task> tasks = new ArrayList<>();
+
+    public ManualRefreshScheduler() {
+        super(1);
+    }
+
+    @Override
+    public synchronized void schedule(Task task, long initialDelay) {
+        tasks.add(task);
+    }
+
+    /**
+     * run every scheduled task once, keeping those which ask to run again. tasks scheduled meanwhile wait for the next call.
+     * @return the number of tasks run
+     */
+    public int runTasks() {
+        List<Task> due;
+        synchronized (this) {
+            due = new ArrayList<>(tasks);
+            tasks.clear();
+        }
+        for (Task task : due) {
+            if (task.run() >= 0) {
+                schedule(task, 0);
+            }
+        }
+        return due.size();
+    }
+}
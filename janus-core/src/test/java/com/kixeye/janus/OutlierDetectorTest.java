@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class OutlierDetectorTest {
+    private final ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry(), NeverTripPolicy.class);
+
+    @Test
+    public void ejectsSlowServerTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 5);
+        for (int i = 0; i < servers.size(); i++) {
+            recordLatencies(servers.get(i), (i == 0) ? 20 : 1);
+        }
+
+        new OutlierDetector().detect(servers);
+
+        Assert.assertTrue(servers.get(0).getServerInstance().isShortCircuited());
+        for (int i = 1; i < servers.size(); i++) {
+            Assert.assertTrue(servers.get(i).getServerInstance().isAvailable());
+        }
+    }
+
+    @Test
+    public void ejectsFailingServerTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 5);
+        for (ServerStats server : servers) {
+            recordLatencies(server, 1);
+        }
+        for (int i = 0; i < 50; i++) {
+            servers.get(0).incrementErrors();
+        }
+
+        new OutlierDetector().detect(servers);
+
+        Assert.assertTrue(servers.get(0).getServerInstance().isShortCircuited());
+        for (int i = 1; i < servers.size(); i++) {
+            Assert.assertTrue(servers.get(i).getServerInstance().isAvailable());
+        }
+    }
+
+    @Test
+    public void ejectionsCappedTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 5);
+        for (int i = 0; i < servers.size(); i++) {
+            recordLatencies(servers.get(i), (i < 2) ? 20 : 1);
+        }
+
+        OutlierDetector detector = new OutlierDetector();
+        detector.detect(servers);
+        Assert.assertEquals(1, countShortCircuited(servers));
+
+        // no more than 20% of the cluster is ejected
+        for (ServerStats server : servers) {
+            recordLatencies(server, server == servers.get(1) ? 20 : 1);
+        }
+        detector.detect(servers);
+        Assert.assertEquals(1, countShortCircuited(servers));
+    }
+
+    @Test
+    public void latencySinceLastRunTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 5);
+        OutlierDetector detector = new OutlierDetector();
+
+        // too few servers take part in the first run to eject anything
+        recordLatencies(servers.get(0), 20);
+        detector.detect(servers);
+        Assert.assertEquals(0, countShortCircuited(servers));
+
+        // only the latencies since then count in the next run
+        for (ServerStats server : servers) {
+            recordLatencies(server, 1);
+        }
+        detector.detect(servers);
+        Assert.assertEquals(0, countShortCircuited(servers));
+    }
+
+    @Test
+    public void tooFewServersTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 2);
+        recordLatencies(servers.get(0), 20);
+        recordLatencies(servers.get(1), 1);
+
+        new OutlierDetector().detect(servers);
+
+        Assert.assertEquals(0, countShortCircuited(servers));
+    }
+
+    @Test
+    public void ejectionCountedAsTripTest() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        List<ServerStats> servers = TestServers.createServers(new ServerStatsFactory(ServerStats.class, metricRegistry, NeverTripPolicy.class), "outlierservice", 5);
+        for (int i = 0; i < servers.size(); i++) {
+            recordLatencies(servers.get(i), (i == 0) ? 20 : 1);
+        }
+        new OutlierDetector().detect(servers);
+        Assert.assertEquals(1, metricRegistry.getCounters().get("outlierservice.server0.short-circuit-tripped").getCount());
+
+        MetricRegistry lightweightRegistry = new MetricRegistry();
+        servers = TestServers.createServers(new ServerStatsFactory(LightweightServerStats.class, lightweightRegistry, NeverTripPolicy.class), "outlierservice", 5);
+        for (int i = 0; i < servers.size(); i++) {
+            recordLatencies(servers.get(i), (i == 0) ? 20 : 1);
+        }
+        new OutlierDetector().detect(servers);
+        Assert.assertEquals(1L, lightweightRegistry.getGauges().get("outlierservice.server0.short-circuit-tripped").getValue());
+    }
+
+    @Test(timeout = 5000)
+    public void detectIfDueDoesNotWaitTest() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ServerStats blocking = new ServerStats() {
+            @Override
+            public long getSuccessCount() {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getSuccessCount();
+            }
+        };
+        blocking.setServerInstance(new ServerInstance("outlierservice", "http://localhost:8080"));
+        final List<ServerStats> blockingServers = Collections.singletonList(blocking);
+        final OutlierDetector detector = new OutlierDetector();
+        Thread background = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                detector.detect(blockingServers);
+            }
+        });
+        background.start();
+        try {
+            Assert.assertTrue(entered.await(1, TimeUnit.SECONDS));
+
+            // a request thread skips the detection rather than waiting for the background run to finish
+            List<ServerStats> servers = TestServers.createServers(factory, "outlierservice", 5);
+            for (int i = 0; i < servers.size(); i++) {
+                recordLatencies(servers.get(i), (i == 0) ? 20 : 1);
+            }
+            detector.detectIfDue(servers, 0);
+            Assert.assertEquals(0, countShortCircuited(servers));
+        } finally {
+            release.countDown();
+            background.join();
+        }
+    }
+
+    private static void recordLatencies(ServerStats server, long latencyInMs) {
+        for (int i = 0; i < 50; i++) {
+            server.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(latencyInMs));
+            server.recordSuccess();
+        }
+    }
+
+    private static int countShortCircuited(List<ServerStats> servers) {
+        int count = 0;
+        for (ServerStats server : servers) {
+            if (server.getServerInstance().isShortCircuited()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static class NeverTripPolicy implements CircuitBreakerPolicy {
+        @Override
+        public void recordSuccess(long nanoTime) {
+        }
+
+        @Override
+        public boolean recordError(long nanoTime) {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RefreshSchedulerTest {
+
+    @Test
+    public void taskRescheduledAfterExceptionTest() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch rerun = new CountDownLatch(1);
+        RefreshScheduler scheduler = new RefreshScheduler(1);
+        try {
+            scheduler.schedule(new RefreshScheduler.Task() {
+                @Override
+                public long run() {
+                    if (runs.incrementAndGet() == 1) {
+                        throw new IllegalStateException("transient failure");
+                    }
+                    rerun.countDown();
+                    return -1;
+                }
+            }, 10);
+
+            Assert.assertTrue(rerun.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, runs.get());
+        } finally {
+            scheduler.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RollingCounterTest {
+
+    @Test
+    public void rollingCounterTest() {
+        RollingCounter counter = new RollingCounter(1, TimeUnit.SECONDS, 10);
+        long start = TimeUnit.SECONDS.toNanos(1000);
+        long bucket = TimeUnit.MILLISECONDS.toNanos(100);
+
+        Assert.assertEquals(0, counter.sum(start));
+        Assert.assertEquals(1, counter.incrementAndSum(start));
+        Assert.assertEquals(2, counter.incrementAndSum(start));
+        Assert.assertEquals(3, counter.incrementAndSum(start + 5 * bucket));
+
+        // the first bucket leaves the window after a second
+        Assert.assertEquals(3, counter.sum(start + 9 * bucket));
+        Assert.assertEquals(1, counter.sum(start + 10 * bucket));
+
+        // a re-used bucket starts from zero
+        Assert.assertEquals(2, counter.incrementAndSum(start + 10 * bucket));
+        Assert.assertEquals(0, counter.sum(start + 30 * bucket));
+    }
+
+    @Test
+    public void incrementAndResetTest() {
+        RollingCounter counter = new RollingCounter(1, TimeUnit.SECONDS, 10);
+        long start = TimeUnit.SECONDS.toNanos(1000);
+        long bucket = TimeUnit.MILLISECONDS.toNanos(100);
+
+        counter.increment(start);
+        counter.increment(start + bucket);
+        Assert.assertEquals(2, counter.sum(start + bucket));
+        Assert.assertEquals(3, counter.incrementAndSum(start + bucket));
+
+        counter.reset();
+        Assert.assertEquals(0, counter.sum(start + bucket));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.config.ConfigurationManager;
+
+public class SlowStartTest {
+    private final ManualClock clock = new ManualClock();
+
+    @Before
+    public void setConfiguration() {
+        ConfigurationManager.getConfigInstance().setProperty(ServerInstance.SLOW_START_WINDOW_IN_MILLIS, 10000);
+        ConfigurationManager.getConfigInstance().setProperty(ServerInstance.SLOW_START_MIN_WEIGHT, 0.1);
+    }
+
+    @After
+    public void clearConfiguration() {
+        ConfigurationManager.getConfigInstance().clearProperty(ServerInstance.SLOW_START_WINDOW_IN_MILLIS);
+        ConfigurationManager.getConfigInstance().clearProperty(ServerInstance.SLOW_START_MIN_WEIGHT);
+        ConfigurationManager.getConfigInstance().clearProperty(ServerInstance.SLOW_START_AGGRESSION);
+    }
+
+    @Test
+    public void linearRampTest() {
+        ServerInstance instance = new ServerInstance("slowstartservice", "http://localhost:8080");
+        instance.setClock(clock);
+        long start = clock.millis();
+
+        Assert.assertEquals(0.1, instance.getSlowStartFactor(start), 0.01);
+        Assert.assertEquals(0.5, instance.getSlowStartFactor(start + 5000), 0.01);
+        Assert.assertEquals(0.9, instance.getSlowStartFactor(start + 9000), 0.01);
+        Assert.assertEquals(1.0, instance.getSlowStartFactor(start + 10000), 0.0);
+        Assert.assertEquals(1.0, instance.getSlowStartFactor(start + 100000), 0.0);
+    }
+
+    @Test
+    public void aggressionTest() {
+        ConfigurationManager.getConfigInstance().setProperty(ServerInstance.SLOW_START_AGGRESSION, 2.0);
+        ServerInstance instance = new ServerInstance("slowstartservice", "http://localhost:8080");
+        instance.setClock(clock);
+        long start = clock.millis();
+
+        Assert.assertEquals(0.5, instance.getSlowStartFactor(start + 2500), 0.01);
+        Assert.assertEquals(1.0, instance.getSlowStartFactor(start + 10000), 0.0);
+    }
+
+    @Test
+    public void disabledTest() {
+        ConfigurationManager.getConfigInstance().setProperty(ServerInstance.SLOW_START_WINDOW_IN_MILLIS, 0);
+        ServerInstance instance = new ServerInstance("slowstartservice", "http://localhost:8080");
+
+        Assert.assertEquals(1.0, instance.getWeight(), 0.0);
+    }
+
+    @Test
+    public void restartsAfterRecoveryTest() {
+        ServerInstance instance = new ServerInstance("slowstartservice", "http://localhost:8080");
+        instance.setClock(clock);
+        instance.setAvailable(true);
+        instance.setHealthy(false);
+        clock.advance(20000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1.0, instance.getWeight(), 0.0);
+
+        long start = clock.millis();
+        instance.setHealthy(true);
+
+        Assert.assertEquals(0.1, instance.getSlowStartFactor(start), 0.01);
+        Assert.assertEquals(0.5, instance.getSlowStartFactor(start + 5000), 0.01);
+        clock.advance(5000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(0.5, instance.getWeight(), 0.01);
+    }
+}
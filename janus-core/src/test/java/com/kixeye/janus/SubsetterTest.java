@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.netflix.config.ConfigurationManager;
+
+public class SubsetterTest {
+    private static final String SERVICE_NAME = "subsetservice";
+    private final ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+
+    @Test
+    public void deterministicSubsetTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, 20);
+        Collection<ServerStats> subset = new Subsetter(SERVICE_NAME, 5, "client1").select(servers);
+        Assert.assertEquals(5, subset.size());
+        Assert.assertEquals(new HashSet<>(subset), new HashSet<>(new Subsetter(SERVICE_NAME, 5, "client1").select(Lists.reverse(servers))));
+        Assert.assertNotEquals(new HashSet<>(subset), new HashSet<>(new Subsetter(SERVICE_NAME, 5, "client2").select(servers)));
+    }
+
+    @Test
+    public void stableSubsetTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, 20);
+        Subsetter subsetter = new Subsetter(SERVICE_NAME, 5, "client1");
+        Set<ServerStats> before = new HashSet<>(subsetter.select(servers));
+
+        // a server outside the subset going down changes nothing
+        for (ServerStats server : servers) {
+            if (!before.contains(server)) {
+                server.getServerInstance().setAvailable(false);
+                break;
+            }
+        }
+        Assert.assertEquals(before, new HashSet<>(subsetter.select(servers)));
+
+        // a server inside the subset going down is replaced by exactly one other
+        ServerStats down = before.iterator().next();
+        down.getServerInstance().setAvailable(false);
+        Set<ServerStats> after = new HashSet<>(subsetter.select(servers));
+        Assert.assertEquals(5, after.size());
+        Assert.assertFalse(after.contains(down));
+        after.retainAll(before);
+        Assert.assertEquals(4, after.size());
+    }
+
+    @Test
+    public void evenSpreadTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, 20);
+        int[] clients = new int[servers.size()];
+        for (int i = 0; i < 1000; i++) {
+            for (ServerStats server : new Subsetter(SERVICE_NAME, 5, "client" + i).select(servers)) {
+                clients[servers.indexOf(server)]++;
+            }
+        }
+        // 1000 clients x 5 servers over 20 servers
+        for (int count : clients) {
+            Assert.assertEquals(250, count, 60);
+        }
+    }
+
+    @Test
+    public void janusUsesSubsetTest() {
+        String[] urls = new String[10];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = "http://localhost:" + (8000 + i);
+        }
+        Janus janus = Janus.builder(SERVICE_NAME).withServers(urls).withSubsetting(3, "client1").build();
+
+        Set<ServerStats> chosen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            chosen.add(janus.getServer());
+        }
+        Assert.assertEquals(3, chosen.size());
+    }
+
+    @Test
+    public void healthChecksCoverSubsetAndStandbyTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, 20);
+        Subsetter subsetter = new Subsetter(SERVICE_NAME, 4, "client1");
+        Set<ServerStats> subset = new HashSet<>(subsetter.select(servers));
+        Set<ServerStats> checked = new HashSet<>(subsetter.selectForHealthChecks(servers));
+        Assert.assertEquals(6, checked.size());
+        Assert.assertTrue(checked.containsAll(subset));
+
+        // a server of the subset going down is still checked, and so is its replacement and a new standby server
+        ServerStats down = subset.iterator().next();
+        down.getServerInstance().setAvailable(false);
+        Set<ServerStats> checkedAfter = new HashSet<>(subsetter.selectForHealthChecks(servers));
+        Assert.assertEquals(7, checkedAfter.size());
+        Assert.assertTrue(checkedAfter.contains(down));
+        Assert.assertTrue(checkedAfter.containsAll(subsetter.select(servers)));
+        Assert.assertTrue(checkedAfter.containsAll(checked));
+    }
+
+    @Test
+    public void janusOnlyHealthChecksSubsetTest() throws Exception {
+        final ConcurrentMap<String, AtomicInteger> checks = new ConcurrentHashMap<>();
+        HealthChecker healthChecker = new HealthChecker(new HealthCheck() {
+            @Override
+            public boolean isHealthy(ServerInstance instance) throws Exception {
+                checks.putIfAbsent(instance.getId(), new AtomicInteger());
+                checks.get(instance.getId()).incrementAndGet();
+                return true;
+            }
+        }, 1);
+        ConfigurationManager.getConfigInstance().setProperty(HealthChecker.INTERVAL_IN_MILLIS, 20);
+        ManualClock clock = new ManualClock();
+        ManualRefreshScheduler scheduler = new ManualRefreshScheduler();
+        try {
+            String[] urls = new String[10];
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = "http://localhost:" + (8000 + i);
+            }
+            Janus janus = Janus.builder(SERVICE_NAME)
+                    .withServers(urls)
+                    .withHealthChecker(healthChecker)
+                    .withSubsetting(3, "client1")
+                    .withClock(clock)
+                    .withBackgroundRefresh(scheduler)
+                    .build();
+            janus.getServer();
+
+            // the subset and one standby server are checked when discovered, and again every time they are due
+            long deadline = System.currentTimeMillis() + 1000;
+            while (!checkedAtLeast(checks, 4, 3) && System.currentTimeMillis() < deadline) {
+                clock.advance(1, TimeUnit.SECONDS);
+                scheduler.runTasks();
+                Thread.sleep(1);
+            }
+            janus.close();
+
+            Assert.assertTrue(checkedAtLeast(checks, 4, 3));
+            Assert.assertEquals(4, checks.size());
+        } finally {
+            ConfigurationManager.getConfigInstance().clearProperty(HealthChecker.INTERVAL_IN_MILLIS);
+            scheduler.close();
+            healthChecker.close();
+        }
+    }
+
+    // have the given number of servers all been checked at least the given number of times?
+    private static boolean checkedAtLeast(ConcurrentMap<String, AtomicInteger> checks, int servers, int times) {
+        int checked = 0;
+        for (AtomicInteger count : checks.values()) {
+            if (count.get() >= times) {
+                checked++;
+            }
+        }
+        return checked >= servers;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SuccessRatioCircuitBreakerPolicyTest {
+    private static final long NOW = TimeUnit.SECONDS.toNanos(1000);
+
+    @Test
+    public void doesNotTripBelowMinRequestsTest() {
+        SuccessRatioCircuitBreakerPolicy policy = new SuccessRatioCircuitBreakerPolicy();
+        for (int i = 0; i < 19; i++) {
+            Assert.assertFalse(policy.recordError(NOW));
+        }
+    }
+
+    @Test
+    public void tripsBelowMinSuccessRatioTest() {
+        SuccessRatioCircuitBreakerPolicy policy = new SuccessRatioCircuitBreakerPolicy();
+        for (int i = 0; i < 15; i++) {
+            policy.recordSuccess(NOW);
+        }
+        // 15 successes out of 20 requests
+        for (int i = 0; i < 5; i++) {
+            Assert.assertFalse(policy.recordError(NOW));
+        }
+        // 15 successes out of 30 requests
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(policy.recordError(NOW));
+        }
+        // 15 successes out of 31 requests
+        Assert.assertTrue(policy.recordError(NOW));
+    }
+
+    @Test
+    public void resetTest() {
+        SuccessRatioCircuitBreakerPolicy policy = new SuccessRatioCircuitBreakerPolicy();
+        for (int i = 0; i < 19; i++) {
+            policy.recordError(NOW);
+        }
+        Assert.assertTrue(policy.recordError(NOW));
+        policy.reset();
+        Assert.assertFalse(policy.recordError(NOW));
+    }
+}
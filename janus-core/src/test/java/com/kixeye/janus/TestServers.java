@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Creates available {@link ServerStats} for tests which don't need a {@link Janus} around them.
+ */
+public final class TestServers {
+
+    private TestServers() {
+    }
+
+    /**
+     * create servers with the ids "server0" to "server{count - 1}"
+     */
+    public static List<ServerStats> createServers(ServerStatsFactory factory, String serviceName, int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "server" + i;
+        }
+        return createServers(factory, serviceName, ids);
+    }
+
+    /**
+     * create servers with the given ids, listening on localhost from port 80 upwards
+     */
+    public static List<ServerStats> createServers(ServerStatsFactory factory, String serviceName, String... ids) {
+        List<ServerStats> servers = Lists.newArrayList();
+        for (int i = 0; i < ids.length; i++) {
+            ServerInstance instance = new ServerInstance(serviceName, ids[i], "localhost", false, 80 + i, 80 + i);
+            instance.setAvailable(true);
+            servers.add(factory.createServerStats(instance));
+        }
+        return servers;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+import com.kixeye.janus.TestServers;
+
+public class ConsistentHashLoadBalancerTest {
+    private final ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+
+    @Test
+    public void sameKeySameServerTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "dummy", 5);
+        ConsistentHashLoadBalancer lb = new ConsistentHashLoadBalancer();
+        for (int i = 0; i < 100; i++) {
+            String key = "user" + i;
+            ServerStats first = lb.choose(servers, key);
+            Assert.assertSame(first, lb.choose(servers, key));
+        }
+    }
+
+    @Test
+    public void membershipChangeOnlyMovesRemovedKeysTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "dummy", 5);
+        ConsistentHashLoadBalancer lb = new ConsistentHashLoadBalancer();
+        ServerStats[] before = new ServerStats[1000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = lb.choose(servers, "user" + i);
+        }
+
+        ServerStats removed = servers.get(2);
+        List<ServerStats> remaining = Lists.newArrayList(servers);
+        remaining.remove(removed);
+        int moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            ServerStats after = lb.choose(remaining, "user" + i);
+            if (before[i] != removed) {
+                Assert.assertSame(before[i], after);
+            } else {
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0);
+
+        // and they come back when the server does
+        for (int i = 0; i < before.length; i++) {
+            Assert.assertSame(before[i], lb.choose(Lists.newArrayList(servers), "user" + i));
+        }
+    }
+
+    @Test
+    public void hotKeySpillsOverTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "dummy", 4);
+        ConsistentHashLoadBalancer lb = new ConsistentHashLoadBalancer();
+        ServerStats home = lb.choose(servers, "hot");
+
+        // the key's own server is skipped once it is above its share of the open requests
+        home.incrementOpenRequests();
+        home.incrementOpenRequests();
+        ServerStats spilled = lb.choose(servers, "hot");
+        Assert.assertNotSame(home, spilled);
+        Assert.assertSame(spilled, lb.choose(servers, "hot"));
+
+        // but is back in use once others are loaded too
+        for (ServerStats server : servers) {
+            if (server != home) {
+                server.incrementOpenRequests();
+                server.incrementOpenRequests();
+            }
+        }
+        Assert.assertSame(home, lb.choose(servers, "hot"));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.kixeye.janus.ManualClock;
+import com.kixeye.janus.PeakEwma;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+
+public class PeakEwmaLoadBalancerTest {
+
+    @Test
+    public void peakLatencyTest() {
+        ManualClock clock = new ManualClock();
+        PeakEwma ewma = new PeakEwma();
+        Assert.assertEquals(0.0, ewma.get(clock.nanoTime()), 0.0);
+
+        // a peak is taken straight away
+        ewma.record(TimeUnit.MILLISECONDS.toNanos(100), clock.nanoTime());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), ewma.get(clock.nanoTime()), 1.0);
+
+        // lower latencies only pull it down gradually
+        clock.advance(1, TimeUnit.SECONDS);
+        ewma.record(TimeUnit.MILLISECONDS.toNanos(10), clock.nanoTime());
+        double cost = ewma.get(clock.nanoTime());
+        Assert.assertTrue(cost < TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertTrue(cost > TimeUnit.MILLISECONDS.toNanos(50));
+
+        // and it decays without latencies
+        clock.advance(PeakEwma.DEFAULT_DECAY_IN_MILLIS * 5, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(ewma.get(clock.nanoTime()) < TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void slowServerAvoidedTest() {
+        ManualClock clock = new ManualClock();
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerInstance slowInstance = new ServerInstance("dummy","slow","localhost",false,80,-1);
+        ServerInstance fastInstance = new ServerInstance("dummy","fast","localhost",false,81,-1);
+        slowInstance.setClock(clock);
+        fastInstance.setClock(clock);
+        ServerStats slow = factory.createServerStats(slowInstance);
+        ServerStats fast = factory.createServerStats(fastInstance);
+        fast.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        slow.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // a single slow response is enough to steer requests away
+        slow.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(500));
+        fast.incrementOpenRequests();
+        PeakEwmaLoadBalancer lb = new PeakEwmaLoadBalancer();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(fast, lb.choose(Lists.newArrayList(slow, fast)));
+        }
+    }
+
+    @Test
+    public void unmeasuredServerTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats measured = factory.createServerStats(new ServerInstance("dummy","measured","localhost",false,80,-1));
+        ServerStats unmeasured = factory.createServerStats(new ServerInstance("dummy","unmeasured","localhost",false,81,-1));
+        measured.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(10));
+
+        PeakEwmaLoadBalancer lb = new PeakEwmaLoadBalancer();
+        Assert.assertSame(unmeasured, lb.choose(Lists.newArrayList(measured, unmeasured)));
+
+        // but only one request at a time until it has a latency
+        unmeasured.incrementOpenRequests();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(measured, lb.choose(Lists.newArrayList(measured, unmeasured)));
+        }
+    }
+}
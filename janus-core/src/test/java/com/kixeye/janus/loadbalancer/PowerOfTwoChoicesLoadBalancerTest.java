@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+
+public class PowerOfTwoChoicesLoadBalancerTest {
+
+    @Test
+    public void twoServersChoosesLeastOpenRequestsTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats busy = factory.createServerStats(new ServerInstance("dummy","busy","localhost",false,80,-1));
+        ServerStats idle = factory.createServerStats(new ServerInstance("dummy","idle","localhost",false,81,-1));
+        busy.incrementOpenRequests();
+        busy.incrementOpenRequests();
+        idle.incrementOpenRequests();
+
+        PowerOfTwoChoicesLoadBalancer lb = new PowerOfTwoChoicesLoadBalancer();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(idle, lb.choose(Lists.newArrayList(busy, idle)));
+        }
+    }
+
+    @Test
+    public void mostLoadedServerNeverChosenTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        List<ServerStats> servers = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            ServerStats server = factory.createServerStats(new ServerInstance("dummy","server" + i,"localhost",false,80 + i,-1));
+            for (int j = 0; j < i; j++) {
+                server.incrementOpenRequests();
+            }
+            servers.add(server);
+        }
+
+        PowerOfTwoChoicesLoadBalancer lb = new PowerOfTwoChoicesLoadBalancer();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertNotSame(servers.get(4), lb.choose(servers));
+        }
+    }
+
+    @Test
+    public void latencyWeightedTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats slow = factory.createServerStats(new ServerInstance("dummy","slow","localhost",false,80,-1));
+        ServerStats fast = factory.createServerStats(new ServerInstance("dummy","fast","localhost",false,81,-1));
+        slow.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        fast.recordLatencyNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        fast.incrementOpenRequests();
+
+        // the fast server has more open requests, but is still less loaded
+        PowerOfTwoChoicesLoadBalancer lb = new PowerOfTwoChoicesLoadBalancer(true);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(fast, lb.choose(Lists.newArrayList(slow, fast)));
+        }
+        Assert.assertSame(slow, new PowerOfTwoChoicesLoadBalancer(false).choose(Lists.newArrayList(slow, fast)));
+    }
+}
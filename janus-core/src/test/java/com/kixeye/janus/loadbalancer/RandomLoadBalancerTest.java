@@ -19,6 +19,7 @@
  */
 package com.kixeye.janus.loadbalancer;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.kixeye.janus.ServerInstance;
 import com.kixeye.janus.ServerStats;
@@ -28,6 +29,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RandomLoadBalancerTest {
     @Test
@@ -67,4 +71,60 @@ public class RandomLoadBalancerTest {
         ServerStats stat = lb.choose(Lists.newArrayList(serverStats));
         Assert.assertEquals(stat,serverStats);
     }
+
+    @Test
+    public void weightedServersTest() {
+        ServerStats full = newServerStats(new ServerInstance("dummy","full","localhost",false,80,-1));
+        ServerStats warming = newServerStats(new ServerInstance("dummy","warming","localhost",false,81,-1) {
+            @Override
+            public double getWeight() {
+                return 0.25;
+            }
+        });
+
+        RandomLoadBalancer lb = new RandomLoadBalancer();
+        int warmingCount = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (lb.choose(Lists.newArrayList(full, warming)) == warming) {
+                warmingCount++;
+            }
+        }
+        // 0.25 / 1.25 of the requests
+        Assert.assertEquals(2000, warmingCount, 300);
+    }
+
+    @Test
+    public void weightsOnlyReadWhileWarmingUpTest() {
+        final AtomicInteger weightReads = new AtomicInteger();
+        final AtomicBoolean warmingUp = new AtomicBoolean(true);
+        ServerStats full = newServerStats(new ServerInstance("dummy","full","localhost",false,80,-1));
+        ServerStats warming = newServerStats(new ServerInstance("dummy","warming","localhost",false,81,-1) {
+            @Override
+            public double getWeight() {
+                weightReads.incrementAndGet();
+                return warmingUp.get() ? 0.5 : 1.0;
+            }
+        });
+        List<ServerStats> servers = ImmutableList.of(full, warming);
+
+        RandomLoadBalancer lb = new RandomLoadBalancer();
+        lb.choose(servers);
+        lb.choose(servers);
+        Assert.assertEquals(2, weightReads.get());
+
+        // once warmed up, the same list is chosen from without reading weights
+        warmingUp.set(false);
+        lb.choose(servers);
+        for (int i = 0; i < 100; i++) {
+            lb.choose(servers);
+        }
+        Assert.assertEquals(3, weightReads.get());
+    }
+
+    private static ServerStats newServerStats(ServerInstance serverInstance) {
+        serverInstance.setAvailable(true);
+        ServerStats serverStats = new ServerStats();
+        serverStats.setServerInstance(serverInstance);
+        return serverStats;
+    }
 }
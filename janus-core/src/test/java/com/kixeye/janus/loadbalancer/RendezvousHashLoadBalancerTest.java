@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+import com.kixeye.janus.TestServers;
+
+public class RendezvousHashLoadBalancerTest {
+    private final ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+
+    @Test
+    public void sameKeySameServerTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "dummy", 5);
+        RendezvousHashLoadBalancer lb = new RendezvousHashLoadBalancer();
+        for (int i = 0; i < 100; i++) {
+            String key = "player" + i;
+            ServerStats first = lb.choose(servers, key);
+            Assert.assertSame(first, lb.choose(servers, key));
+
+            // whatever order the servers are in
+            Assert.assertSame(first, lb.choose(Lists.reverse(servers), key));
+        }
+    }
+
+    @Test
+    public void membershipChangeOnlyMovesRemovedKeysTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, "dummy", 5);
+        RendezvousHashLoadBalancer lb = new RendezvousHashLoadBalancer();
+        ServerStats[] before = new ServerStats[1000];
+        int[] counts = new int[servers.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = lb.choose(servers, "player" + i);
+            counts[servers.indexOf(before[i])]++;
+        }
+        for (int count : counts) {
+            Assert.assertEquals(200, count, 60);
+        }
+
+        ServerStats removed = servers.get(1);
+        List<ServerStats> remaining = Lists.newArrayList(servers);
+        remaining.remove(removed);
+        for (int i = 0; i < before.length; i++) {
+            ServerStats after = lb.choose(remaining, "player" + i);
+            if (before[i] != removed) {
+                Assert.assertSame(before[i], after);
+            } else {
+                Assert.assertNotSame(removed, after);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+import com.netflix.config.ConfigurationManager;
+
+public class WeightedRandomLoadBalancerTest {
+    private static final String SERVICE_NAME = "weightedRandom";
+
+    @After
+    public void tearDown() {
+        ConfigurationManager.getConfigInstance().clearProperty("janus.serviceName." + SERVICE_NAME + ".weight.big");
+        ConfigurationManager.getConfigInstance().clearProperty("janus.serviceName." + SERVICE_NAME + ".weight.off");
+    }
+
+    @Test
+    public void configuredWeightsTest() {
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.big", 3);
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.off", 0);
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats big = factory.createServerStats(new ServerInstance(SERVICE_NAME, "big", "localhost", false, 80, -1));
+        ServerStats small = factory.createServerStats(new ServerInstance(SERVICE_NAME, "small", "localhost", false, 81, -1));
+        ServerStats off = factory.createServerStats(new ServerInstance(SERVICE_NAME, "off", "localhost", false, 82, -1));
+        List<ServerStats> servers = ImmutableList.of(off, big, small);
+
+        WeightedRandomLoadBalancer lb = new WeightedRandomLoadBalancer(SERVICE_NAME);
+        int bigCount = 0;
+        for (int i = 0; i < 10000; i++) {
+            ServerStats chosen = lb.choose(servers);
+            Assert.assertNotSame(off, chosen);
+            if (chosen == big) {
+                bigCount++;
+            }
+        }
+        Assert.assertEquals(7500, bigCount, 500);
+    }
+
+    @Test
+    public void slowStartedServerTest() {
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats full = factory.createServerStats(new ServerInstance(SERVICE_NAME, "full", "localhost", false, 80, -1));
+        ServerStats warming = factory.createServerStats(new ServerInstance(SERVICE_NAME, "warming", "localhost", false, 81, -1) {
+            @Override
+            public double getWeight() {
+                return 0.25;
+            }
+        });
+        List<ServerStats> servers = ImmutableList.of(full, warming);
+
+        WeightedRandomLoadBalancer lb = new WeightedRandomLoadBalancer(SERVICE_NAME);
+        int warmingCount = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (lb.choose(servers) == warming) {
+                warmingCount++;
+            }
+        }
+        Assert.assertEquals(2000, warmingCount, 500);
+    }
+
+    @Test
+    public void noWeightsTest() {
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.off", 0);
+        ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+        ServerStats off = factory.createServerStats(new ServerInstance(SERVICE_NAME, "off", "localhost", false, 80, -1));
+
+        // nothing to weigh against, so the only server still gets the traffic
+        WeightedRandomLoadBalancer lb = new WeightedRandomLoadBalancer(SERVICE_NAME);
+        Assert.assertSame(off, lb.choose(ImmutableList.of(off)));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.loadbalancer;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.janus.ServerStats;
+import com.kixeye.janus.ServerStatsFactory;
+import com.kixeye.janus.TestServers;
+import com.netflix.config.ConfigurationManager;
+
+public class WeightedRoundRobinLoadBalancerTest {
+    private static final String SERVICE_NAME = "wrr";
+    private final ServerStatsFactory factory = new ServerStatsFactory(ServerStats.class, new MetricRegistry());
+
+    @After
+    public void tearDown() {
+        ConfigurationManager.getConfigInstance().clearProperty("janus.serviceName." + SERVICE_NAME + ".weight.big");
+        ConfigurationManager.getConfigInstance().clearProperty("janus.serviceName." + SERVICE_NAME + ".weight.off");
+    }
+
+    @Test
+    public void equalWeightsTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, "a", "b", "c");
+        WeightedRoundRobinLoadBalancer lb = new WeightedRoundRobinLoadBalancer(SERVICE_NAME);
+        for (int i = 0; i < 9; i++) {
+            Assert.assertSame(servers.get(i % 3), lb.choose(servers));
+        }
+    }
+
+    @Test
+    public void configuredWeightsTest() {
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.big", 5);
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.off", 0);
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, "big", "small", "off");
+        WeightedRoundRobinLoadBalancer lb = new WeightedRoundRobinLoadBalancer(SERVICE_NAME);
+
+        // smooth: the small server is in the middle of the round rather than at one end
+        StringBuilder round = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            round.append(lb.choose(servers).getServerInstance().getId().charAt(0));
+        }
+        Assert.assertEquals("bbbsbb", round.toString());
+    }
+
+    @Test
+    public void weightsOnlyReadForNewListTest() {
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, "big", "small");
+        WeightedRoundRobinLoadBalancer lb = new WeightedRoundRobinLoadBalancer(SERVICE_NAME);
+        lb.choose(servers);
+
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.big", 3);
+        int big = 0;
+        for (int i = 0; i < 8; i++) {
+            if (lb.choose(servers) == servers.get(0)) {
+                big++;
+            }
+        }
+        Assert.assertEquals(4, big);
+
+        // a refresh hands the load balancer a new list
+        servers = Lists.newArrayList(servers);
+        big = 0;
+        for (int i = 0; i < 8; i++) {
+            if (lb.choose(servers) == servers.get(0)) {
+                big++;
+            }
+        }
+        Assert.assertEquals(6, big);
+    }
+
+    @Test
+    public void slowStartedServerTest() {
+        ServerStats full = factory.createServerStats(new ServerInstance(SERVICE_NAME, "full", "localhost", false, 80, -1));
+        ServerStats warming = factory.createServerStats(new ServerInstance(SERVICE_NAME, "warming", "localhost", false, 81, -1) {
+            @Override
+            public double getWeight() {
+                return 0.25;
+            }
+        });
+        List<ServerStats> servers = Lists.newArrayList(full, warming);
+
+        WeightedRoundRobinLoadBalancer lb = new WeightedRoundRobinLoadBalancer(SERVICE_NAME);
+        int warmingCount = 0;
+        for (int i = 0; i < 100; i++) {
+            if (lb.choose(servers) == warming) {
+                warmingCount++;
+            }
+        }
+        Assert.assertEquals(20, warmingCount);
+    }
+
+    @Test
+    public void largeWeightsTest() {
+        ConfigurationManager.getConfigInstance().setProperty("janus.serviceName." + SERVICE_NAME + ".weight.big", 3000000);
+        List<ServerStats> servers = TestServers.createServers(factory, SERVICE_NAME, "big", "small");
+        WeightedRoundRobinLoadBalancer lb = new WeightedRoundRobinLoadBalancer(SERVICE_NAME);
+
+        // scaled down to the longest round rather than overflowing
+        int big = 0;
+        for (int i = 0; i < 1 << 14; i++) {
+            if (lb.choose(servers) == servers.get(0)) {
+                big++;
+            }
+        }
+        Assert.assertEquals((1 << 14) - 1, big);
+    }
+}
@@ -26,6 +26,7 @@ import com.netflix.config.ConfigurationManager;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -60,4 +61,33 @@ public class ConfigServerListTest {
         List<ServerInstance> servers = serverList.getListOfServers();
         Assert.assertTrue( servers.size() == 0);
     }
+
+    @Test
+    public void configServerListPushesChangesTest() throws InterruptedException {
+        ConfigurationManager.getConfigInstance().setProperty("janus.listOfServers."+VIP, "http://localhost:8080,http://localhost:8180");
+
+        ConfigServerList serverList = new ConfigServerList(VIP);
+        ServerInstance original = serverList.getListOfServers().get(0);
+
+        final List<ServerListDelta> deltas = new ArrayList<>();
+        serverList.addServerListListener(new ServerListListener() {
+            @Override
+            public void onServerListChanged(ServerListDelta delta) {
+                deltas.add(delta);
+            }
+        });
+
+        ConfigurationManager.getConfigInstance().setProperty("janus.listOfServers."+VIP, "http://localhost:8080,http://localhost:8280");
+
+        Assert.assertEquals(1, deltas.size());
+        ServerListDelta delta = deltas.get(0);
+        Assert.assertEquals(1, delta.getAdded().size());
+        Assert.assertEquals("localhost:8280", delta.getAdded().get(0).getId());
+        Assert.assertEquals(1, delta.getRemoved().size());
+        Assert.assertEquals("localhost:8180", delta.getRemoved().get(0).getId());
+        Assert.assertTrue(delta.getChanged().isEmpty());
+
+        // unchanged instances keep their identity
+        Assert.assertSame(original, serverList.getListOfServers().get(0));
+    }
 }
@@ -30,6 +30,9 @@ import org.jdom2.Element;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.kixeye.janus.Janus;
+import com.kixeye.janus.JanusClock;
+import com.kixeye.janus.ManualClock;
 import com.kixeye.janus.ServerInstance;
 import com.kixeye.scout.eureka.EurekaApplication;
 import com.kixeye.scout.eureka.EurekaServiceDiscoveryClient;
@@ -66,6 +69,65 @@ public class EurekaServerListTest {
         Assert.assertEquals( VIP, serverList.getServiceName() );
     }
 
+    @Test
+    public void eurekaServerListReusesUnchangedInstancesTest() {
+        EurekaServiceDiscoveryClient client = mock(EurekaServiceDiscoveryClient.class);
+        EurekaServiceInstanceDescriptor instanceInfo = newInstanceInfo(1000);
+        when(client.describe(VIP)).thenReturn(Arrays.asList(instanceInfo));
+
+        EurekaServerList serverList = new EurekaServerList( client, VIP, false, false );
+        ServerInstance server = serverList.getListOfServers().get(0);
+        Assert.assertSame( server, serverList.getListOfServers().get(0) );
+
+        // an updated descriptor is applied to the already published instance
+        EurekaServiceInstanceDescriptor updatedInstanceInfo = newInstanceInfo(2000);
+        when(client.describe(VIP)).thenReturn(Arrays.asList(updatedInstanceInfo));
+        EurekaServerInstance updated = (EurekaServerInstance) serverList.getListOfServers().get(0);
+        Assert.assertSame( server, updated );
+        Assert.assertSame( updatedInstanceInfo, updated.getInstanceInfo() );
+        Assert.assertSame( updated, serverList.getListOfServers().get(0) );
+    }
+
+    @Test
+    public void eurekaServerListReplacesMovedInstancesTest() {
+        EurekaServiceDiscoveryClient client = mock(EurekaServiceDiscoveryClient.class);
+        when(client.describe(VIP)).thenReturn(Arrays.asList(newInstanceInfo(1000)));
+        EurekaServerList serverList = new EurekaServerList( client, VIP, false, false );
+        ServerInstance server = serverList.getListOfServers().get(0);
+
+        // the same instance id on a different port is a different server instance
+        when(client.describe(VIP)).thenReturn(Arrays.asList(newInstanceInfo(2000, 8080)));
+        ServerInstance moved = serverList.getListOfServers().get(0);
+        Assert.assertNotSame( server, moved );
+        Assert.assertEquals( server.getId(), moved.getId() );
+        Assert.assertEquals( 8080, moved.getPort() );
+        Assert.assertSame( moved, serverList.getListOfServers().get(0) );
+    }
+
+    @Test
+    public void eurekaServerListAsyncTest() {
+        EurekaServiceDiscoveryClient client = getMockedDiscoveryClient();
+        when(client.getLastRefreshTime()).thenReturn(-1L);
+
+        long start = System.currentTimeMillis();
+        EurekaServerList serverList = new EurekaServerList( client, VIP, false, false, true );
+        Assert.assertTrue( System.currentTimeMillis() - start < 1000 );
+        Assert.assertFalse( serverList.getReadyFuture().isDone() );
+    }
+
+    @Test
+    public void eurekaServerListRunsOnJanusClockTest() {
+        EurekaServiceDiscoveryClient client = getMockedDiscoveryClient();
+        when(client.getLastRefreshTime()).thenReturn(1L);
+        EurekaServerList serverList = new EurekaServerList( client, VIP, false, false );
+        Assert.assertSame( JanusClock.system(), serverList.getClock() );
+
+        ManualClock clock = new ManualClock();
+        Janus janus = Janus.builder(VIP).withEureka(serverList).withClock(clock).build();
+        Assert.assertSame( clock, serverList.getClock() );
+        janus.close();
+    }
+
     private EurekaServiceDiscoveryClient getMockedDiscoveryClient() {
         Element metadata = new Element("metadata")
         		.addContent(new Element("websocketPort").setText("8180"));
@@ -92,4 +154,27 @@ public class EurekaServerListTest {
         }
         return client;
     }
+
+    private EurekaServiceInstanceDescriptor newInstanceInfo(long lastUpdatedTimestamp) {
+        return newInstanceInfo(lastUpdatedTimestamp, 80);
+    }
+
+    private EurekaServiceInstanceDescriptor newInstanceInfo(long lastUpdatedTimestamp, int port) {
+        Element element = new Element("instance")
+                .addContent(new Element("app").setText("VIP"))
+                .addContent(new Element("vipAddress").setText(VIP))
+                .addContent(new Element("hostName").setText("localhost"))
+                .addContent(new Element("ipAddr").setText("127.0.0.1"))
+                .addContent(new Element("port").setText(String.valueOf(port)))
+                .addContent(new Element("status").setText("UP"))
+                .addContent(new Element("lastUpdatedTimestamp").setText(String.valueOf(lastUpdatedTimestamp)));
+
+        try {
+            Constructor<EurekaServiceInstanceDescriptor> constructor = EurekaServiceInstanceDescriptor.class.getDeclaredConstructor(EurekaApplication.class, Element.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(null, element);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.kixeye.janus.Janus;
+import com.kixeye.janus.ServerInstance;
+import com.kixeye.scout.eureka.EurekaServiceDiscoveryClient;
+
+public class SeededServerListTest {
+    private static final String VIP = "kvpservice";
+
+    @Test
+    public void seededServerListTest() {
+        SettableFuture<Void> ready = SettableFuture.create();
+        ConstServerList seedServerList = new ConstServerList(VIP, "http://localhost:8080");
+        ConstServerList serverList = new ConstServerList(VIP, "http://localhost:8180");
+
+        SeededServerList seeded = new SeededServerList(serverList, ready, seedServerList);
+        Assert.assertFalse(seeded.isReady());
+        Assert.assertEquals(VIP, seeded.getServiceName());
+
+        List<ServerInstance> servers = seeded.getListOfServers();
+        Assert.assertEquals(1, servers.size());
+        Assert.assertEquals("localhost:8080", servers.get(0).getId());
+
+        final List<ServerListDelta> deltas = new ArrayList<>();
+        seeded.addServerListListener(new ServerListListener() {
+            @Override
+            public void onServerListChanged(ServerListDelta delta) {
+                deltas.add(delta);
+            }
+        });
+
+        ready.set(null);
+        Assert.assertTrue(seeded.isReady());
+
+        Assert.assertEquals(1, deltas.size());
+        Assert.assertEquals("localhost:8180", deltas.get(0).getAdded().get(0).getId());
+        Assert.assertEquals("localhost:8080", deltas.get(0).getRemoved().get(0).getId());
+
+        servers = seeded.getListOfServers();
+        Assert.assertEquals(1, servers.size());
+        Assert.assertEquals("localhost:8180", servers.get(0).getId());
+    }
+
+    @Test
+    public void closingJanusDetachesFromServerListTest() {
+        EurekaServiceDiscoveryClient client = mock(EurekaServiceDiscoveryClient.class);
+        EurekaServerList serverList = new EurekaServerList(client, VIP, false, false);
+        Janus janus = Janus.builder(VIP)
+                .withEureka(serverList)
+                .withSeedServerList(new ConstServerList(VIP, "http://localhost:8080"))
+                .build();
+        Assert.assertTrue(serverList.hasServerListListeners());
+
+        // otherwise eureka keeps being watched for a closed Janus
+        janus.close();
+        Assert.assertFalse(serverList.hasServerListListeners());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.serverlist;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kixeye.janus.ServerInstance;
+
+public class SnapshotServerListTest {
+    private static final String VIP = "kvpservice";
+
+    @Test
+    public void snapshotServerListTest() throws Exception {
+        File directory = Files.createTempDirectory("janus").toFile();
+        File file = new File(directory, VIP + ".snapshot");
+        directory.deleteOnExit();
+        file.deleteOnExit();
+
+        ServerInstance up = new ServerInstance(VIP, "http://localhost:8080");
+        up.setAvailable(true);
+        ServerInstance down = new ServerInstance(VIP, "id", "localhost", true, 8443, 8444);
+        down.setAvailable(false);
+
+        SnapshotServerList snapshot = new SnapshotServerList(VIP, file);
+        Assert.assertTrue(snapshot.getListOfServers().isEmpty());
+        Assert.assertTrue(snapshot.save(Arrays.asList(up, down)));
+        Assert.assertFalse(snapshot.save(Arrays.asList(up, down)));
+        Assert.assertTrue(file.isFile());
+
+        List<ServerInstance> servers = new SnapshotServerList(VIP, file).getListOfServers();
+        Assert.assertEquals(2, servers.size());
+        Assert.assertEquals(up.getId(), servers.get(0).getId());
+        Assert.assertEquals(8080, servers.get(0).getPort());
+        Assert.assertTrue(servers.get(0).isAvailable());
+        Assert.assertEquals("id", servers.get(1).getId());
+        Assert.assertTrue(servers.get(1).isSecure());
+        Assert.assertEquals(8444, servers.get(1).getWebsocketPort());
+        Assert.assertFalse(servers.get(1).isAvailable());
+
+        // a snapshot for another service is ignored
+        Assert.assertTrue(new SnapshotServerList("otherservice", file).getListOfServers().isEmpty());
+    }
+
+    @Test
+    public void snapshotSavesDiscoveryAvailabilityTest() throws Exception {
+        File directory = Files.createTempDirectory("janus").toFile();
+        File file = new File(directory, VIP + ".snapshot");
+        directory.deleteOnExit();
+        file.deleteOnExit();
+
+        ServerInstance tripped = new ServerInstance(VIP, "http://localhost:8080");
+        tripped.setAvailable(true);
+        tripped.tripCircuitBreaker();
+        ServerInstance trippedDown = new ServerInstance(VIP, "http://localhost:8081");
+        trippedDown.tripCircuitBreaker();
+        ServerInstance unhealthy = new ServerInstance(VIP, "http://localhost:8082");
+        unhealthy.setAvailable(true);
+        unhealthy.setHealthy(false);
+
+        Assert.assertTrue(new SnapshotServerList(VIP, file).save(Arrays.asList(tripped, trippedDown, unhealthy)));
+
+        List<ServerInstance> servers = new SnapshotServerList(VIP, file).getListOfServers();
+        Assert.assertTrue(servers.get(0).isAvailable());
+        Assert.assertFalse(servers.get(1).isAvailable());
+        Assert.assertTrue(servers.get(2).isAvailable());
+    }
+}
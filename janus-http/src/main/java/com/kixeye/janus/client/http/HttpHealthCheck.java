@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.client.http;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import com.google.common.base.Preconditions;
+import com.kixeye.janus.HealthCheck;
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * A {@link HealthCheck} which sends an HTTP GET to a path on the server instance, and treats any 2xx response
+ * as healthy. Each check uses a single connection, which is closed when the check is done.
+ */
+public class HttpHealthCheck implements HealthCheck {
+    public static final int DEFAULT_TIMEOUT_IN_MILLIS = 2000;
+
+    private final String path;
+    private final int timeoutInMillis;
+
+    /**
+     * @param path the path of the health check endpoint, e.g. "/healthcheck"
+     */
+    public HttpHealthCheck(String path) {
+        this(path, DEFAULT_TIMEOUT_IN_MILLIS);
+    }
+
+    /**
+     * @param path the path of the health check endpoint, e.g. "/healthcheck"
+     * @param timeoutInMillis the connect and read timeout (in millis)
+     */
+    public HttpHealthCheck(String path, int timeoutInMillis) {
+        Preconditions.checkNotNull(path, "'path' cannot be null.");
+        Preconditions.checkArgument(timeoutInMillis > 0, "'timeoutInMillis' must be > 0");
+        this.path = path.startsWith("/") ? path : "/" + path;
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    @Override
+    public boolean isHealthy(ServerInstance instance) throws Exception {
+        URL url = new URL(instance.getUrl() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(timeoutInMillis);
+            connection.setReadTimeout(timeoutInMillis);
+            connection.setUseCaches(false);
+            // don't leave an idle connection behind in the keep-alive cache
+            connection.setRequestProperty("Connection", "close");
+
+            int status = connection.getResponseCode();
+            InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                body.close();
+            }
+            return status >= 200 && status < 300;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -115,8 +115,24 @@ public class AsyncHttpClient implements Closeable {
 	 * @throws IOException
 	 */
 	public ListenableFuture<HttpResponse> execute(HttpRequest request, String path, Object... urlVariables) throws IOException {
+		return execute((String) null, request, path, urlVariables);
+	}
+
+	/**
+	 * Executes the given request on the server instance for the given key. With a {@link com.kixeye.janus.loadbalancer.KeyedLoadBalancer}
+	 * requests with the same key keep going to the same server instance.
+	 * 
+	 * @param key the routing key, or null to not route by key
+	 * @param request the HttpRequest to execute
+	 * @param path the path to send the request to.  the path variables should be enclosed with "{}" Ex. /stores/{storeId}/items/{itemId}
+	 * @param urlVariables variables that will be substituted into the given path.
+	 *
+	 * @return ListenableFuture clients can register a listener to be notified when the http request has been completed.
+	 * @throws IOException
+	 */
+	public ListenableFuture<HttpResponse> execute(String key, HttpRequest request, String path, Object... urlVariables) throws IOException {
 		SettableFuture<HttpResponse> response = SettableFuture.create();
-		executor.submit(new ExecuteTask(response, request, path, urlVariables, janus, httpClient, executor, numRetries));
+		executor.submit(new ExecuteTask(response, key, request, path, urlVariables, janus, httpClient, executor, numRetries));
 		return response;
 	}
 	
@@ -125,6 +141,7 @@ public class AsyncHttpClient implements Closeable {
 		private final HttpAsyncClient httpClient;
 		private final ExecutorService executor;
 		private final SettableFuture<HttpResponse> response;
+		private final String key;
 		private final HttpRequest request;
 		private final String url;
 		private final Object[] urlVariables;
@@ -136,14 +153,16 @@ public class AsyncHttpClient implements Closeable {
 		
 		/**
 		 * @param responseFuture the response future
+		 * @param key the routing key, or null
 		 * @param request the http request
 		 * @param maxRetryCount maximum number of retries
 		 * @param path the http request path
 		 * @param urlVariables path substitution variables
 		 */
-		public ExecuteTask(SettableFuture<HttpResponse> responseFuture, HttpRequest request, String path, Object[] urlVariables,
+		public ExecuteTask(SettableFuture<HttpResponse> responseFuture, String key, HttpRequest request, String path, Object[] urlVariables,
 				Janus janus, HttpAsyncClient httpClient, ExecutorService executor, int maxRetryCount) {
 			this.response = responseFuture;
+			this.key = key;
 			this.request = request;
 			this.url = path;
 			this.urlVariables = urlVariables.clone();
@@ -158,7 +177,9 @@ public class AsyncHttpClient implements Closeable {
 
 		public void run() {
 			try {
-				final ServerStats server = janus.getServer();
+				// the clock is read once for choosing the server and timing the request
+				final long startTime = janus.getClock().nanoTime();
+				final ServerStats server = janus.getServer(key, startTime);
 				if (server == null) {
 					throw new NoServerAvailableException( janus.getServiceName() );
 				}
@@ -211,8 +232,6 @@ public class AsyncHttpClient implements Closeable {
 				
 				// execute!
 				FutureCallback<org.apache.http.HttpResponse> completeListener = new FutureCallback<org.apache.http.HttpResponse>() {
-                    private long startTime = System.currentTimeMillis();
-                    
 					@Override
 					public void failed(Exception ex) {
 						if (retryCount >= maxRetryCount) {
@@ -230,7 +249,8 @@ public class AsyncHttpClient implements Closeable {
 					
 					@Override
 					public void completed(org.apache.http.HttpResponse result) {
-                        long latency = System.currentTimeMillis() - startTime;
+                        long endTime = janus.getClock().nanoTime();
+                        long latency = endTime - startTime;
 
 						Map<String, Collection<String>> headers = new HashMap<>();
 						for (Header header : result.getAllHeaders()) {
@@ -243,15 +263,24 @@ public class AsyncHttpClient implements Closeable {
 							headerValues.add(header.getValue());
 						}
 						
+						int statusCode = result.getStatusLine().getStatusCode();
+						boolean succeeded = statusCode < 500;
 						try {
-							response.set(new HttpResponse(result.getStatusLine().getStatusCode(), headers, result.getEntity().getContent()));
+							response.set(new HttpResponse(statusCode, headers, result.getEntity().getContent()));
 						} catch (Exception e) {
                             logger.debug("Passing exception to response", e);
 		                	response.setException(e);
+		                	succeeded = false;
 						}
 
 		                server.decrementOpenRequests();
-                        server.recordLatency(latency);
+                        server.recordLatencyNanos(latency, endTime);
+                        // the response is passed on either way, but only a successful one counts towards closing the circuit breaker
+                        if (succeeded) {
+                            server.recordSuccess(endTime);
+                        } else {
+                            server.incrementErrors();
+                        }
 					}
 					
 					@Override
@@ -57,6 +57,7 @@ public class DefaultRestHttpClient {
 	private final Janus janus;
 	private final int numRetries;
 	private final String contentType;
+	private final String key;
 	
 	/**
 	 * Creates a new HTTP client with a JSON serializer.
@@ -71,6 +72,7 @@ public class DefaultRestHttpClient {
 		this.janus = janus;
 		this.numRetries = numRetries;
 		this.contentType = null;
+		this.key = null;
 		
 		this.client = (AsyncRestClient)RestClients
 				.create(JACKSON_JSON_SER_DE)
@@ -94,6 +96,7 @@ public class DefaultRestHttpClient {
 		this.janus = janus;
 		this.numRetries = numRetries;
 		this.contentType = contentType;
+		this.key = null;
 		
 		this.client = (AsyncRestClient)RestClients
 				.create(serDe)
@@ -119,6 +122,7 @@ public class DefaultRestHttpClient {
 		this.janus = janus;
 		this.numRetries = numRetries;
 		this.contentType = contentType;
+		this.key = null;
 		
 		this.client = (AsyncRestClient)RestClients
 				.create(serDe)
@@ -146,6 +150,7 @@ public class DefaultRestHttpClient {
 		this.janus = janus;
 		this.numRetries = numRetries;
 		this.contentType = contentType;
+		this.key = null;
 		
 		this.client = (AsyncRestClient)RestClients
 				.create(serDe)
@@ -155,6 +160,32 @@ public class DefaultRestHttpClient {
 				.build();
 	}
 	
+	/**
+	 * Creates a view of the given client which routes requests by key.
+	 * 
+	 * @param client the client whose {@link Janus}, retries, content type and connections are shared
+	 * @param key the routing key, or null to not route by key
+	 */
+	private DefaultRestHttpClient(DefaultRestHttpClient client, String key) {
+		this.janus = client.janus;
+		this.numRetries = client.numRetries;
+		this.contentType = client.contentType;
+		this.client = client.client;
+		this.key = key;
+	}
+	
+	/**
+	 * Gets a client, sharing this client's connections, whose requests are all routed by the given key. With a
+	 * {@link com.kixeye.janus.loadbalancer.KeyedLoadBalancer} requests with the same key keep going to the same
+	 * server instance, for example client.forKey(userId).get("/users/{id}", User.class, userId).
+	 * 
+	 * @param key the routing key, or null to not route by key
+	 * @return the keyed client
+	 */
+	public DefaultRestHttpClient forKey(String key) {
+		return new DefaultRestHttpClient(this, key);
+	}
+	
 	/**
      * Performs a asynchronous http GET request, returning an object of the given responseType converted from the response payload's body
      *
@@ -334,8 +365,9 @@ public class DefaultRestHttpClient {
 	private <T> HttpResponse<T> executeWithLoadBalancer(String path, FunctionWrapper<T> function) throws NoServerAvailableException, RetriesExceededException {
         long retries = numRetries;
         do {
-            // get a load balanced server
-            ServerStats server = janus.getServer();
+            // get a load balanced server, as of the start of the request so the clock is read once for both
+            long startTime = janus.getClock().nanoTime();
+            ServerStats server = janus.getServer(key, startTime);
             if (server == null) {
                 throw new NoServerAvailableException(janus.getServiceName());
             }
@@ -345,13 +377,10 @@ public class DefaultRestHttpClient {
 
             // call into REST Template wrapper
             HttpResponse<T> result = null;
-            long latency = -1;
             try {
                 server.incrementSentMessages();
                 server.incrementOpenRequests();
-                long startTime = System.currentTimeMillis();
                 result = function.execute(newUrl);
-                latency = System.currentTimeMillis() - startTime;
 
                 // exit if successful
                 if (result == null) {
@@ -361,6 +390,10 @@ public class DefaultRestHttpClient {
                 		throw new HttpResponseException(result.getStatusCode(), "Unexpected response");
                 	}
                 	
+                    // only a successful request counts towards the latency and the circuit breaker's successes
+                    long endTime = janus.getClock().nanoTime();
+                    server.recordLatencyNanos(endTime - startTime, endTime);
+                    server.recordSuccess(endTime);
                     return result;
                 }
             } catch (Exception e) {
@@ -369,9 +402,6 @@ public class DefaultRestHttpClient {
                 server.incrementErrors();
             } finally {
                 server.decrementOpenRequests();
-                if (latency > 0) {
-                    server.recordLatency(latency);
-                }
             }
 
             retries -= 1;
@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.client.http;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.simpleframework.http.Request;
+import org.simpleframework.http.Response;
+import org.simpleframework.http.core.Container;
+import org.simpleframework.http.core.ContainerServer;
+import org.simpleframework.transport.connect.Connection;
+import org.simpleframework.transport.connect.SocketConnection;
+
+import com.kixeye.janus.ServerInstance;
+
+public class HttpHealthCheckTest {
+    private static final String VIP_TEST = "test";
+
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> path = new AtomicReference<>();
+
+    private Connection serverConnection;
+    private int serverPort;
+
+    @Before
+    public void setUp() throws Exception {
+        serverConnection = new SocketConnection(new ContainerServer(new Container() {
+            @Override
+            public void handle(Request request, Response response) {
+                path.set(request.getPath().getPath());
+                response.setCode(status.get());
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }));
+
+        ServerSocket socketServer = new ServerSocket(0);
+        serverPort = socketServer.getLocalPort();
+        socketServer.close();
+
+        serverConnection.connect(new InetSocketAddress(serverPort));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverConnection.close();
+    }
+
+    @Test
+    public void healthyTest() throws Exception {
+        HttpHealthCheck healthCheck = new HttpHealthCheck("healthcheck");
+        Assert.assertTrue(healthCheck.isHealthy(new ServerInstance(VIP_TEST, "http://localhost:" + serverPort)));
+        Assert.assertEquals("/healthcheck", path.get());
+    }
+
+    @Test
+    public void errorStatusTest() throws Exception {
+        HttpHealthCheck healthCheck = new HttpHealthCheck("/healthcheck");
+        status.set(503);
+        Assert.assertFalse(healthCheck.isHealthy(new ServerInstance(VIP_TEST, "http://localhost:" + serverPort)));
+        status.set(404);
+        Assert.assertFalse(healthCheck.isHealthy(new ServerInstance(VIP_TEST, "http://localhost:" + serverPort)));
+    }
+
+    @Test(expected = ConnectException.class)
+    public void connectionRefusedTest() throws Exception {
+        serverConnection.close();
+        HttpHealthCheck healthCheck = new HttpHealthCheck("/healthcheck");
+        healthCheck.isHealthy(new ServerInstance(VIP_TEST, "http://localhost:" + serverPort));
+    }
+}
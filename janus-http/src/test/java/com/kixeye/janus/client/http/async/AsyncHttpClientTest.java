@@ -51,6 +51,7 @@ import com.kixeye.janus.ServerStatsFactory;
 import com.kixeye.janus.client.http.HttpMethod;
 import com.kixeye.janus.client.http.HttpRequest;
 import com.kixeye.janus.client.http.HttpResponse;
+import com.kixeye.janus.loadbalancer.ConsistentHashLoadBalancer;
 import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
 import com.kixeye.janus.serverlist.ConstServerList;
 
@@ -127,4 +128,32 @@ public class AsyncHttpClientTest {
 	        Assert.assertEquals(new String(sentData, Charsets.US_ASCII).trim(), new String(IOUtils.toByteArray(response.getBody()), Charsets.US_ASCII).trim());
         }
     }
+
+    @Test
+    public void testExecuteWithKey() throws Exception {
+        // the second server is not listening, so only requests routed to the first one succeed
+        ServerSocket socketServer = new ServerSocket(0);
+        int deadPort = socketServer.getLocalPort();
+        socketServer.close();
+
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST, "http://localhost:" + port, "http://localhost:" + deadPort),
+                new ConsistentHashLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, new MetricRegistry()));
+        String key = null;
+        for (int i = 0; key == null; i++) {
+            if (janus.getServer("key" + i).getServerInstance().getPort() == port) {
+                key = "key" + i;
+            }
+        }
+
+        try (AsyncHttpClient client = new AsyncHttpClient(janus, 0)) {
+            for (int i = 0; i < 10; i++) {
+                ListenableFuture<HttpResponse> responseFuture = client.execute(key, new HttpRequest(HttpMethod.GET, null, null), "/");
+                HttpResponse response = responseFuture.get(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(response);
+            }
+        }
+    }
 }
@@ -46,6 +46,10 @@ import com.codahale.metrics.MetricRegistry;
 import com.kixeye.janus.Janus;
 import com.kixeye.janus.ServerStats;
 import com.kixeye.janus.ServerStatsFactory;
+import com.kixeye.janus.SuccessRatioCircuitBreakerPolicy;
+import com.kixeye.janus.client.exception.NoServerAvailableException;
+import com.kixeye.janus.client.exception.RetriesExceededException;
+import com.kixeye.janus.loadbalancer.ConsistentHashLoadBalancer;
 import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
 import com.kixeye.janus.loadbalancer.ZoneAwareLoadBalancer;
 import com.kixeye.janus.serverlist.ConstServerList;
@@ -273,6 +277,74 @@ public class DefaultRestHttpClientTest {
         Assert.assertNotNull(result);
     }
 
+    @Test
+    public void forKeyTest() throws Exception {
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST,"http://localhost:" + server1Port,"http://localhost:" + server2Port),
+                new ConsistentHashLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, new MetricRegistry()) );
+        DefaultRestHttpClient client = new DefaultRestHttpClient(janus, 0, DefaultRestHttpClient.UTF8_STRING_SER_DE, "text/plain");
+
+        testContainer = new Container() {
+			public void handle(Request req, Response resp) {
+				try {
+					resp.getByteChannel().write(ByteBuffer.wrap(req.getValue("Host").getBytes(StandardCharsets.UTF_8)));
+				} catch (IOException e) {
+					logger.error("Unable to write to channel.");
+				}
+			}
+		};
+
+        // every request for a key goes to the key's server
+        for (String key : new String[] { "user1", "user2", "user3" }) {
+            String expected = "localhost:" + janus.getServer(key).getServerInstance().getPort();
+            DefaultRestHttpClient keyedClient = client.forKey(key);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(expected, keyedClient.get("/host", String.class).getBody().deserialize());
+            }
+        }
+    }
+
+    @Test
+    public void serverErrorsTripSuccessRatioTest() throws Exception {
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST,"http://localhost:" + server1Port),
+                new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, new MetricRegistry(), SuccessRatioCircuitBreakerPolicy.class) );
+        DefaultRestHttpClient client = new DefaultRestHttpClient(janus, 0, DefaultRestHttpClient.UTF8_STRING_SER_DE, "text/plain");
+        ServerStats stats = janus.getServer();
+
+        testContainer = new Container() {
+			public void handle(Request req, Response resp) {
+				resp.setCode(500);
+			}
+		};
+
+        // every 5xx is an error and nothing else, so the breaker trips once the window holds enough requests
+        int requests = 0;
+        try {
+            while (requests <= 20) {
+                requests++;
+                try {
+                    client.get("/error", String.class);
+                    Assert.fail("a 5xx response is not returned");
+                } catch (RetriesExceededException e) {
+                    // expected
+                }
+            }
+            Assert.fail("the circuit breaker did not trip");
+        } catch (NoServerAvailableException e) {
+            // expected
+        }
+        Assert.assertEquals(21, requests);
+        Assert.assertTrue(stats.getServerInstance().isShortCircuited());
+        Assert.assertEquals(0, stats.getSuccessCount());
+        Assert.assertEquals(20, stats.getErrorCount());
+        Assert.assertEquals(0, stats.getLatencyCount());
+    }
+
     @Test
     public void notFoundTest() throws Exception {
         Janus janus = new Janus(
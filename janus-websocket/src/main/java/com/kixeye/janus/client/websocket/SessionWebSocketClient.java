@@ -26,6 +26,8 @@ import com.kixeye.janus.ServerInstance;
 import com.kixeye.janus.ServerStats;
 import com.kixeye.janus.client.exception.NoServerAvailableException;
 import com.kixeye.janus.client.exception.RetriesExceededException;
+import com.kixeye.janus.loadbalancer.KeyedLoadBalancer;
+import com.kixeye.janus.loadbalancer.RendezvousHashLoadBalancer;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
@@ -53,6 +55,7 @@ public class SessionWebSocketClient {
     private final int numRetries;
     private final String relativeUrl;
     private final WebSocketClient webSocketClient;
+    private final KeyedLoadBalancer keyedLoadBalancer = new RendezvousHashLoadBalancer();
 
     /**
      * @param janus           the {@link Janus} instances managing the service cluster
@@ -87,12 +90,29 @@ public class SessionWebSocketClient {
      * @throws RetriesExceededException
      */
     public WebSocketSession getNewSession(WebSocketListener listener) throws NoServerAvailableException, RetriesExceededException {
+        return getNewSession(null, listener);
+    }
+
+    /**
+     * Establishes a new {@link WebSocketSession} with the server instance for the given key, e.g. a player id, so that
+     * reconnects return to the same server instance (and whatever state it keeps for the key) while it is available.
+     * Server instances are picked with rendezvous hashing (see {@link RendezvousHashLoadBalancer}), whatever the
+     * load balancer of {@link Janus} is, so only the keys of server instances which come or go move elsewhere.
+     * If the connection fails, the retries go to server instances selected by {@link Janus} as usual.
+     *
+     * @param key      the routing key, or null to let {@link Janus} select the server instance
+     * @param listener a {@link WebSocketListener} used to listen for session events from the created {@link WebSocketSession}
+     * @return {@link WebSocketSession}
+     * @throws NoServerAvailableException
+     * @throws RetriesExceededException
+     */
+    public WebSocketSession getNewSession(String key, WebSocketListener listener) throws NoServerAvailableException, RetriesExceededException {
         Preconditions.checkNotNull(listener, "'listener' cannot be null.");
 
         long retries = numRetries;
         do {
-            // get a load balanced server
-            ServerStats server = janus.getServer();
+            // get the key's server on the first attempt, a load balanced server on retries
+            ServerStats server = (retries == numRetries) ? janus.getServer(key, keyedLoadBalancer) : janus.getServer();
             if (server == null) {
                 throw new NoServerAvailableException(janus.getServiceName());
             }
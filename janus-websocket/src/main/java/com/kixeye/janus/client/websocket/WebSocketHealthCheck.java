@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.client.websocket;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketFrame;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.kixeye.janus.HealthCheck;
+import com.kixeye.janus.ServerInstance;
+
+/**
+ * A {@link HealthCheck} which connects to a websocket endpoint on the server instance, sends a ping and treats
+ * the server instance as healthy if the pong arrives in time. Each check uses a single connection, which is closed
+ * when the check is done, including a connection which only completes after the check gave up on it.
+ */
+public class WebSocketHealthCheck implements HealthCheck {
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketHealthCheck.class);
+
+    public static final long DEFAULT_TIMEOUT_IN_MILLIS = 2000;
+
+    private final String relativeUrl;
+    private final WebSocketClient webSocketClient;
+    private final long timeoutInMillis;
+
+    /**
+     * @param relativeUrl     the relative url (path) that the remote websocket endpoint is listening on
+     * @param webSocketClient the underlying {@link WebSocketClient} used to connect to the remote endpoint
+     */
+    public WebSocketHealthCheck(String relativeUrl, WebSocketClient webSocketClient) {
+        this(relativeUrl, webSocketClient, DEFAULT_TIMEOUT_IN_MILLIS);
+    }
+
+    /**
+     * @param relativeUrl     the relative url (path) that the remote websocket endpoint is listening on
+     * @param webSocketClient the underlying {@link WebSocketClient} used to connect to the remote endpoint
+     * @param timeoutInMillis the time (in millis) to wait for the connection and for the pong
+     */
+    public WebSocketHealthCheck(String relativeUrl, WebSocketClient webSocketClient, long timeoutInMillis) {
+        Preconditions.checkNotNull(webSocketClient, "'webSocketClient' cannot be null");
+        Preconditions.checkArgument(timeoutInMillis > 0, "'timeoutInMillis' must be > 0");
+
+        this.relativeUrl = relativeUrl == null ? "" : relativeUrl.trim();
+        this.webSocketClient = webSocketClient;
+        this.timeoutInMillis = timeoutInMillis;
+
+        try {
+            this.webSocketClient.start();
+        } catch (Exception e) {
+            logger.error("Unable to start WebSocketClient", e);
+        }
+    }
+
+    @Override
+    public boolean isHealthy(ServerInstance instance) throws Exception {
+        String url = (instance.isSecure() ? "wss://" : "ws://") + instance.getHost() + ":" + instance.getWebsocketPort() + relativeUrl;
+        PongListener listener = new PongListener();
+        Future<Session> connecting = webSocketClient.connect(listener, new URI(url));
+        Session session = null;
+        try {
+            session = connecting.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+            session.getRemote().sendPing(ByteBuffer.allocate(0));
+            return listener.pong.await(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            if (session != null) {
+                session.close(StatusCode.NORMAL, "health check");
+            } else {
+                // stop connecting, and should the connection still complete, the listener closes it
+                connecting.cancel(true);
+            }
+            listener.close();
+        }
+    }
+
+    /**
+     * Waits for the pong answering the health check's ping, and closes the session once the check is done.
+     */
+    @WebSocket
+    public static class PongListener {
+        private final CountDownLatch pong = new CountDownLatch(1);
+        private Session session;
+        private boolean closed = false;
+
+        @OnWebSocketConnect
+        public synchronized void onWebSocketConnect(Session session) {
+            if (closed) {
+                session.close(StatusCode.NORMAL, "health check");
+            } else {
+                this.session = session;
+            }
+        }
+
+        @OnWebSocketFrame
+        public void onWebSocketFrame(Frame frame) {
+            if (frame.getType() == Frame.Type.PONG) {
+                pong.countDown();
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if (session != null) {
+                session.close(StatusCode.NORMAL, "health check");
+                session = null;
+            }
+        }
+    }
+}
@@ -46,7 +46,9 @@ import com.kixeye.chassis.transport.serde.converter.JsonJacksonMessageSerDe;
 import com.kixeye.janus.Janus;
 import com.kixeye.janus.ServerStats;
 import com.kixeye.janus.ServerStatsFactory;
+import com.kixeye.janus.client.exception.RetriesExceededException;
 import com.kixeye.janus.loadbalancer.RandomLoadBalancer;
+import com.kixeye.janus.loadbalancer.RendezvousHashLoadBalancer;
 import com.kixeye.janus.serverlist.ConstServerList;
 import com.netflix.config.ConfigurationManager;
 
@@ -99,6 +101,45 @@ public class SessionWebSocketClientTest {
         runPingTest(url);
     }
 
+    @Test
+    public void keyedSessionTest() throws Exception {
+        // the second server is not listening, so only sessions routed to the first one connect
+        ServerSocket socketServer = new ServerSocket(0);
+        int deadPort = socketServer.getLocalPort();
+        socketServer.close();
+
+        Janus janus = new Janus(
+                VIP_TEST,
+                new ConstServerList(VIP_TEST, "ws://localhost:" + serverPort, "ws://localhost:" + deadPort),
+                new RandomLoadBalancer(),
+                new ServerStatsFactory(ServerStats.class, new MetricRegistry()));
+        SessionWebSocketClient client = new SessionWebSocketClient(janus, 0, "/json", new WebSocketClient());
+
+        // keys are routed by rendezvous hashing whatever the load balancer is
+        RendezvousHashLoadBalancer keyedLoadBalancer = new RendezvousHashLoadBalancer();
+        String liveKey = null;
+        String deadKey = null;
+        for (int i = 0; liveKey == null || deadKey == null; i++) {
+            if (janus.getServer("key" + i, keyedLoadBalancer).getServerInstance().getWebsocketPort() == serverPort) {
+                liveKey = "key" + i;
+            } else {
+                deadKey = "key" + i;
+            }
+        }
+
+        for (int i = 0; i < 5; i++) {
+            WebSocketSession session = client.getNewSession(liveKey, new PongListener(SettableFuture.<Void>create()));
+            Assert.assertTrue(session.isOpen());
+            session.close();
+        }
+        try {
+            client.getNewSession(deadKey, new PongListener(SettableFuture.<Void>create()));
+            Assert.fail("the key's server is not listening");
+        } catch (RetriesExceededException e) {
+            // expected
+        }
+    }
+
     private void runPingTest(String url) throws Exception {
 //        messageRegistry = context.getBean(WebSocketMessageRegistry.class);
 //        messageRegistry.registerType("ping", TestRestService.PingMessage.class);
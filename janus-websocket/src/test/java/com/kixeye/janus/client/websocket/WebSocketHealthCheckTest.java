@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * Janus
+ * %%
+ * Copyright (C) 2014 KIXEYE, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.kixeye.janus.client.websocket;
+
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.server.WebSocketHandler;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
+import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kixeye.chassis.transport.serde.converter.JsonJacksonMessageSerDe;
+import com.kixeye.janus.ServerInstance;
+
+public class WebSocketHealthCheckTest {
+    private static final String VIP_TEST = "test";
+
+    private int serverPort;
+    private Server server;
+    private WebSocketClient webSocketClient;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket socketServer = new ServerSocket(0);
+        serverPort = socketServer.getLocalPort();
+        socketServer.close();
+
+        server = new Server(serverPort);
+        server.setHandler(new WebSocketHandler() {
+            @Override
+            public void configure(WebSocketServletFactory factory) {
+                factory.setCreator(new WebSocketCreator() {
+                    @Override
+                    public Object createWebSocket(ServletUpgradeRequest req, ServletUpgradeResponse resp) {
+                        return new TestWebSocketHandler(new JsonJacksonMessageSerDe());
+                    }
+                });
+            }
+        });
+        server.start();
+        webSocketClient = new WebSocketClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        webSocketClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void healthyTest() throws Exception {
+        WebSocketHealthCheck healthCheck = new WebSocketHealthCheck("/", webSocketClient);
+        Assert.assertTrue(healthCheck.isHealthy(new ServerInstance(VIP_TEST, "ws://localhost:" + serverPort)));
+
+        // the check's connection is closed again
+        Thread.sleep(100);
+        Assert.assertTrue(webSocketClient.getOpenSessions().isEmpty());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void connectionRefusedTest() throws Exception {
+        server.stop();
+        WebSocketHealthCheck healthCheck = new WebSocketHealthCheck("/", webSocketClient);
+        healthCheck.isHealthy(new ServerInstance(VIP_TEST, "ws://localhost:" + serverPort));
+    }
+
+    @Test
+    public void connectTimeoutTest() throws Exception {
+        // accepts connections (into its backlog) but never answers the upgrade request
+        ServerSocket silentServer = new ServerSocket(0);
+        try {
+            WebSocketHealthCheck healthCheck = new WebSocketHealthCheck("/", webSocketClient, 100);
+            long start = System.currentTimeMillis();
+            try {
+                healthCheck.isHealthy(new ServerInstance(VIP_TEST, "ws://localhost:" + silentServer.getLocalPort()));
+                Assert.fail("the check should have timed out");
+            } catch (TimeoutException e) {
+                Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+            }
+            Assert.assertTrue(webSocketClient.getOpenSessions().isEmpty());
+        } finally {
+            silentServer.close();
+        }
+    }
+}